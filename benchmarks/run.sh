@@ -0,0 +1,18 @@
+#!/bin/sh
+# Run the benchmarks and keep the result as results/<version>.json. If a baseline version is
+# given, the result is compared with results/<baseline>.json and the script fails on regression.
+#
+#   ./run.sh <version> [baseline-version] [threshold-percent]
+set -e
+cd "$(dirname "$0")"
+if [ -z "$1" ]; then
+  echo "usage: $0 <version> [baseline-version] [threshold-percent]" >&2
+  exit 2
+fi
+mkdir -p results
+mvn -B -q clean package
+java -jar target/benchmarks.jar -rf json -rff "results/$1.json"
+if [ -n "$2" ]; then
+  java -cp target/benchmarks.jar com.piranframework.darbaan.CompareResults \
+    "results/$2.json" "results/$1.json" ${3:-10}
+fi
@@ -0,0 +1,93 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Compare two JMH result files in JSON format and report every benchmark which got slower than the
+ * baseline by more than a threshold percent (10 by default). Exits with status 1 if there is any
+ * regression, so it can fail a build. Usage:
+ * <pre>
+ *   CompareResults baseline.json current.json [threshold-percent]
+ * </pre>
+ *
+ * @author Isa Hekmatizadeh
+ */
+public class CompareResults {
+  private static final double DEFAULT_THRESHOLD = 10;
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("usage: CompareResults baseline.json current.json [threshold-percent]");
+      System.exit(2);
+    }
+    double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+    Map<String, JsonNode> baseline = read(new File(args[0]));
+    Map<String, JsonNode> current = read(new File(args[1]));
+    int regressions = 0;
+    for (Map.Entry<String, JsonNode> e : current.entrySet()) {
+      JsonNode base = baseline.get(e.getKey());
+      if (Objects.isNull(base)) {
+        System.out.printf("%-70s %12s%n", e.getKey(), "new");
+        continue;
+      }
+      double before = base.path("primaryMetric").path("score").asDouble();
+      double after = e.getValue().path("primaryMetric").path("score").asDouble();
+      double change = (after - before) * 100 / before;
+      //in throughput modes a higher score is better, in time modes a lower one
+      double slowdown = "thrpt".equals(e.getValue().path("mode").asText()) ? -change : change;
+      boolean regressed = slowdown > threshold;
+      if (regressed)
+        regressions++;
+      System.out.printf("%-70s %12.3f -> %12.3f %s %+7.2f%%%s%n", e.getKey(), before, after,
+          e.getValue().path("primaryMetric").path("scoreUnit").asText(), change,
+          regressed ? "  REGRESSION" : "");
+    }
+    if (regressions > 0) {
+      System.out.printf("%d benchmark(s) regressed more than %.1f%%%n", regressions, threshold);
+      System.exit(1);
+    }
+  }
+
+  private static Map<String, JsonNode> read(File file) throws IOException {
+    Map<String, JsonNode> results = new LinkedHashMap<>();
+    for (JsonNode result : new ObjectMapper().readTree(file))
+      results.put(key(result), result);
+    return results;
+  }
+
+  private static String key(JsonNode result) {
+    StringBuilder sb = new StringBuilder(result.path("benchmark").asText());
+    Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields();
+    while (params.hasNext()) {
+      Map.Entry<String, JsonNode> p = params.next();
+      sb.append(':').append(p.getKey()).append('=').append(p.getValue().asText());
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan;
+
+import com.piranframework.darbaan.util.Constants;
+import com.piranframework.darbaan.util.IdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generating a request id, done for every request
+ *
+ * @author Isa Hekmatizadeh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdGeneratorBenchmark {
+
+  @Benchmark
+  public String id() {
+    return IdGenerator.id(Constants.ID_REQ_PREFIX);
+  }
+}
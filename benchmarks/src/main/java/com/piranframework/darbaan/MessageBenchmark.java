@@ -0,0 +1,123 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan;
+
+import com.piranframework.darbaan.codec.PayloadCodecs;
+import com.piranframework.darbaan.util.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zeromq.ZContext;
+import org.zeromq.ZFrame;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMsg;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full path of a message through zeroMQ: encoding a REQ and writing it on a socket, and reading a
+ * REP from a socket and decoding it into a response. Sockets are an inproc pair, so the transport
+ * cost is the minimum and the measured time is mostly framing and coding.
+ *
+ * @author Isa Hekmatizadeh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageBenchmark {
+
+  @Param({"128", "65536"})
+  private int payloadSize;
+
+  private ZContext ctx;
+  private ZMQ.Socket channel;
+  private ZMQ.Socket server;
+  private ZFrame serverFrame;
+  private Request request;
+  private ZMsg reply;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    ctx = new ZContext(1);
+    server = ctx.createSocket(ZMQ.PAIR);
+    server.bind("inproc://benchmark");
+    channel = ctx.createSocket(ZMQ.PAIR);
+    channel.connect("inproc://benchmark");
+    serverFrame = new ZFrame("10.0.0.1:5000");
+    byte[] payload = new byte[payloadSize];
+    payload[0] = '"';
+    for (int i = 1; i < payloadSize - 1; i++)
+      payload[i] = 'a';
+    payload[payloadSize - 1] = '"';
+    request = new Request()
+        .setRole("USER")
+        .setServiceName("bench")
+        .setServiceVersion("1")
+        .setActionCategory("category")
+        .setActionName("action")
+        .setCodec(PayloadCodecs.JSON)
+        .setPayloadBytes(payload);
+    reply = new ZMsg();
+    reply.add(Constants.PROTOCOL_HEADER);
+    reply.add(Constants.REP);
+    reply.add("RQ-1");
+    reply.add(new byte[]{0, 0, 0, (byte) 200});
+    reply.add(payload);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    ctx.destroy();
+  }
+
+  @Benchmark
+  public ZMsg sendRequest() {
+    ZMsg msg = Connector.encode(request, "RQ-1", serverFrame.duplicate());
+    msg.send(channel);
+    return ZMsg.recvMsg(server);
+  }
+
+  @Benchmark
+  public Object receiveReply() throws IOException {
+    reply.send(server, false);
+    ZMsg msg = ZMsg.recvMsg(channel);
+    msg.pop(); // protocol header
+    msg.pop(); // command
+    String requestId = msg.popString();
+    int status = Connector.readStatus(msg.pop());
+    byte[] payload = msg.pop().getData();
+    return new Response(requestId, status, payload, PayloadCodecs.JSON, null, null)
+        .getResponse(String.class);
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan;
+
+import com.piranframework.darbaan.codec.PayloadCodec;
+import com.piranframework.darbaan.codec.PayloadCodecs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding the payload of a request and decoding the payload of a response, by each codec
+ *
+ * @author Isa Hekmatizadeh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PayloadBenchmark {
+
+  @Param({PayloadCodecs.JSON_ID, PayloadCodecs.SMILE_ID})
+  private String codecId;
+
+  private PayloadCodec codec;
+  private Map<String, Object> payload;
+  private byte[] encoded;
+
+  @Setup
+  public void setup() throws IOException {
+    codec = PayloadCodecs.byId(codecId);
+    payload = new HashMap<>();
+    payload.put("customerId", 123456789L);
+    payload.put("name", "Darbaan benchmark");
+    List<Integer> items = new ArrayList<>();
+    for (int i = 0; i < 32; i++)
+      items.add(i);
+    payload.put("items", items);
+    encoded = codec.encode(payload);
+  }
+
+  @Benchmark
+  public Request setPayload() throws IOException {
+    return new Request().setCodec(codec).setPayload(payload);
+  }
+
+  @Benchmark
+  public Object getResponse() throws IOException {
+    return new Response("RQ", 200, encoded, codec, null, null).getResponse(Map.class);
+  }
+}
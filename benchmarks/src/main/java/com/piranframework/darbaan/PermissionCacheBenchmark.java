@@ -0,0 +1,71 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Permission check of a request against a cache of the given number of actions
+ *
+ * @author Isa Hekmatizadeh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PermissionCacheBenchmark {
+
+  @Param({"100", "10000"})
+  private int actions;
+
+  private PermissionCache cache;
+
+  @Setup
+  public void setup() {
+    cache = new PermissionCache();
+    for (int i = 0; i < actions; i++)
+      cache.addPermission(String.format("service%d-1/category/action", i),
+          Arrays.asList("USER", "ADMIN"));
+  }
+
+  @Benchmark
+  public boolean granted() {
+    return cache.hasAccess("service7-1", "category", "action", "ADMIN");
+  }
+
+  @Benchmark
+  public boolean denied() {
+    return cache.hasAccess("service7-1", "category", "action", "GUEST");
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan;
+
+import com.piranframework.darbaan.model.Server;
+import com.piranframework.darbaan.model.Service;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zeromq.ZFrame;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picking the server of a request among the servers of a service, by weighted round-robin and by
+ * routing key. Run by several threads since the send pool picks servers concurrently
+ *
+ * @author Isa Hekmatizadeh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ServiceBenchmark {
+
+  @Param({"1", "8", "64"})
+  private int servers;
+
+  private Service service;
+
+  @Setup
+  public void setup() {
+    service = new Service("bench", "1");
+    for (int i = 0; i < servers; i++) {
+      Server server = new Server(new ZFrame("10.0.0." + i + ":5000"));
+      server.setWeight(1 + i % 3);
+      server.add(service);
+    }
+  }
+
+  @Benchmark
+  public Server roundRobin() {
+    return service.nextServer();
+  }
+
+  @Benchmark
+  public Server routingKey() {
+    return service.nextServer("customer-42");
+  }
+}
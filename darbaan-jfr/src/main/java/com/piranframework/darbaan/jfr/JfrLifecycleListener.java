@@ -0,0 +1,125 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.jfr;
+
+import com.piranframework.darbaan.Priority;
+import com.piranframework.darbaan.Request;
+import com.piranframework.darbaan.model.Server;
+import com.piranframework.darbaan.model.Service;
+import com.piranframework.darbaan.spi.LifecycleListener;
+
+import java.util.Objects;
+
+import static com.piranframework.darbaan.util.IdentityUtil.serviceId;
+
+/**
+ * Emits a Java Flight Recorder event for each lifecycle notification of darbaan. Events are
+ * instant events carrying the measured durations as fields. While an event type is disabled in
+ * the recording, the event is created but never filled or committed, the JIT removes the
+ * allocation and the names of the services and servers are never built, so the cost is a flag
+ * check.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public class JfrLifecycleListener implements LifecycleListener {
+
+  @Override
+  public void requestEnqueued(String requestId, Service service, Server server,
+                              Priority priority) {
+    RequestEnqueuedEvent event = new RequestEnqueuedEvent();
+    if (event.isEnabled()) {
+      event.requestId = requestId;
+      event.serviceId = idOf(service);
+      event.server = identityOf(server);
+      event.priority = priority.name();
+      event.commit();
+    }
+  }
+
+  @Override
+  public void requestSent(String requestId, Service service, Server server, long queuedNanos) {
+    RequestSentEvent event = new RequestSentEvent();
+    if (event.isEnabled()) {
+      event.requestId = requestId;
+      event.serviceId = idOf(service);
+      event.server = identityOf(server);
+      event.queued = queuedNanos;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void replyReceived(String requestId, Service service, Server server, int status,
+                            long latencyNanos) {
+    ReplyReceivedEvent event = new ReplyReceivedEvent();
+    if (event.isEnabled()) {
+      event.requestId = requestId;
+      event.serviceId = idOf(service);
+      event.server = identityOf(server);
+      event.status = status;
+      event.latency = latencyNanos;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void requestCompleted(Request request, int status, long totalNanos) {
+    RequestCompletedEvent event = new RequestCompletedEvent();
+    if (event.isEnabled()) {
+      event.requestId = request.getRequestId();
+      event.serviceId = Objects.isNull(request.getServiceSelector())
+          ? serviceId(request.getServiceName(), request.getServiceVersion())
+          : request.getServiceSelector().toString();
+      event.status = status;
+      event.total = totalNanos;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void permissionRejected(Request request, String serviceId) {
+    PermissionRejectedEvent event = new PermissionRejectedEvent();
+    if (event.isEnabled()) {
+      event.requestId = request.getRequestId();
+      event.serviceId = serviceId;
+      event.role = request.getRole();
+      event.actionAddress = serviceId + "/" + request.getActionCategory() + "/"
+          + request.getActionName();
+      event.commit();
+    }
+  }
+
+  @Override
+  public void serverEvicted(Server server, long silenceMillis) {
+    ServerEvictedEvent event = new ServerEvictedEvent();
+    if (event.isEnabled()) {
+      event.server = identityOf(server);
+      event.silence = silenceMillis;
+      event.commit();
+    }
+  }
+
+  private static String idOf(Service service) {
+    return Objects.isNull(service) ? null : service.id();
+  }
+
+  private static String identityOf(Server server) {
+    return Objects.isNull(server) ? null : server.getIdentity().toString();
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * @author Isa Hekmatizadeh
+ */
+@Name("com.piranframework.darbaan.RequestSent")
+@Label("Request Sent")
+@Description("Request written on the socket")
+@Category({"Darbaan", "Requests"})
+@StackTrace(false)
+final class RequestSentEvent extends Event {
+
+  @Label("Request Id")
+  String requestId;
+
+  @Label("Service Id")
+  String serviceId;
+
+  @Label("Server")
+  String server;
+
+  @Label("Queue Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long queued;
+}
@@ -49,13 +49,20 @@ class AdminClient {
 
   private static final Logger log = LoggerFactory.getLogger(AdminClient.class);
   private final ZContext ctx;
+  private final String identity;
   private final Map<Node, Thread> threads = new ConcurrentHashMap<>();
   private final Map<Node, Process> processes = new ConcurrentHashMap<>();
   private final BiConsumer<String, List<String>> addPermission;
+  private final RateLimiter rateLimiter;
+  private final Runnable permissionsLoaded;
 
-  AdminClient(ZContext ctx, BiConsumer<String, List<String>> addPermission) {
+  AdminClient(ZContext ctx, String identity, BiConsumer<String, List<String>> addPermission,
+              RateLimiter rateLimiter, Runnable permissionsLoaded) {
     this.ctx = ctx;
+    this.identity = identity;
     this.addPermission = addPermission;
+    this.rateLimiter = rateLimiter;
+    this.permissionsLoaded = permissionsLoaded;
   }
 
   /**
@@ -108,7 +115,7 @@ class AdminClient {
     @Override
     public void run() {
       try (ZMQ.Socket dealer = ctx.createSocket(ZMQ.DEALER)) {
-        dealer.setIdentity((Darbaan.configuration.getIp() + ":" + Darbaan.configuration.getPort()).getBytes());
+        dealer.setIdentity(identity.getBytes());
         dealer.setReconnectIVLMax(1000);
         dealer.setSndHWM(1000);
         dealer.setRcvHWM(1000);
@@ -143,6 +150,8 @@ class AdminClient {
       String command = msg.popString();
       if (Objects.equals(Constants.PERMS, command)) {
         handlePerms(msg);
+      } else if (Objects.equals(Constants.LIMITS, command)) {
+        handleLimits(msg);
       }
     }
 
@@ -154,6 +163,21 @@ class AdminClient {
         addPermission.accept(actionAddress, listOfRoles);
         actionAddress = msg.popString();
       }
+      permissionsLoaded.run();
+    }
+
+    /**
+     * LIMITS message consists of triples of scope, key and limit frames. Limit is rate and burst
+     * separated by slash, an empty limit removes the limit of the key
+     */
+    private void handleLimits(ZMsg msg) {
+      String scope = msg.popString();
+      while (Objects.nonNull(scope)) {
+        String key = msg.popString();
+        String limit = msg.popString();
+        rateLimiter.update(scope, key, limit);
+        scope = msg.popString();
+      }
     }
 
     @SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
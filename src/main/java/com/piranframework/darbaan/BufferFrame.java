@@ -0,0 +1,78 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.piranframework.darbaan;
+
+import org.zeromq.ZFrame;
+import org.zeromq.ZMQ;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link ZFrame} backed by a {@link ByteBuffer}. The buffer is handed to the socket as it is,
+ * so sending a slice or a direct buffer does not copy it into an intermediate byte array.
+ * <p>
+ * {@link #getData()} and {@link #toString()} still materialize the bytes, they are only used for
+ * dumping the message.
+ *
+ * @author Isa Hekmatizadeh
+ */
+class BufferFrame extends ZFrame {
+
+  private final ByteBuffer buffer;
+
+  BufferFrame(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public boolean send(ZMQ.Socket socket, int flags) {
+    if (socket == null)
+      throw new IllegalArgumentException("socket parameter must be set");
+    return socket.sendByteBuffer(buffer.duplicate(), flags) >= 0;
+  }
+
+  @Override
+  public byte[] getData() {
+    ByteBuffer view = buffer.duplicate();
+    byte[] data = new byte[view.remaining()];
+    view.get(data);
+    return data;
+  }
+
+  @Override
+  public int size() {
+    return buffer.remaining();
+  }
+
+  @Override
+  public boolean hasData() {
+    return true;
+  }
+
+  @Override
+  public ZFrame duplicate() {
+    return new BufferFrame(buffer.duplicate());
+  }
+
+  @Override
+  public String toString() {
+    return new ZFrame(getData()).toString();
+  }
+}
@@ -19,9 +19,22 @@
 
 package com.piranframework.darbaan;
 
+import com.piranframework.darbaan.codec.PayloadCodec;
+import com.piranframework.darbaan.codec.PayloadCodecs;
+import com.piranframework.darbaan.exception.DeadlineExceededException;
+import com.piranframework.darbaan.exception.QueueFullException;
+import com.piranframework.darbaan.exception.RateLimitExceededException;
+import com.piranframework.darbaan.exception.RequestTimeoutException;
 import com.piranframework.darbaan.exception.RoleHasNotPermissionException;
+import com.piranframework.darbaan.exception.ServerUnavailableException;
 import com.piranframework.darbaan.exception.UnknownServiceException;
+import com.piranframework.darbaan.metrics.Counter;
+import com.piranframework.darbaan.metrics.LatencyHistogram;
+import com.piranframework.darbaan.metrics.MetricsRegistry;
+import com.piranframework.darbaan.model.Server;
 import com.piranframework.darbaan.model.Service;
+import com.piranframework.darbaan.spi.LifecycleListener;
+import com.piranframework.darbaan.spi.LifecycleListeners;
 import com.piranframework.darbaan.util.Constants;
 import com.piranframework.geev.Node;
 import org.slf4j.Logger;
@@ -34,25 +47,46 @@ import org.zeromq.ZMsg;
 import zmq.ZError;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Queue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
-import static com.piranframework.darbaan.Darbaan.configuration;
 import static com.piranframework.darbaan.util.Constants.CHANNEL_ROLE;
+import static com.piranframework.darbaan.util.Constants.CANCEL;
+import static com.piranframework.darbaan.util.Constants.CHUNK;
+import static com.piranframework.darbaan.util.Constants.CREDIT;
+import static com.piranframework.darbaan.util.Constants.GATEWAY_TIMEOUT;
+import static com.piranframework.darbaan.util.Constants.END;
+import static com.piranframework.darbaan.util.Constants.HDR_CODEC;
+import static com.piranframework.darbaan.util.Constants.HDR_STREAM;
+import static com.piranframework.darbaan.util.Constants.HDR_TRACE;
+import static com.piranframework.darbaan.util.Constants.HDR_UPLOAD;
 import static com.piranframework.darbaan.util.Constants.INTR;
+import static com.piranframework.darbaan.util.Constants.INTR_WEIGHT;
 import static com.piranframework.darbaan.util.Constants.PING;
 import static com.piranframework.darbaan.util.Constants.PONG;
 import static com.piranframework.darbaan.util.Constants.PROTOCOL_HEADER;
 import static com.piranframework.darbaan.util.Constants.REP;
 import static com.piranframework.darbaan.util.Constants.RINTR;
+import static com.piranframework.darbaan.util.IdGenerator.id;
 import static com.piranframework.darbaan.util.IdentityUtil.serverId;
 import static com.piranframework.darbaan.util.IdentityUtil.serviceId;
 import static org.zeromq.ZMsg.recvMsg;
@@ -65,29 +99,172 @@ import static org.zeromq.ZMsg.recvMsg;
 class Connector {
 
   private static final Logger log = LoggerFactory.getLogger(Connector.class);
-  private final Thread internalThread;
   private final Thread monitorThread;
   private final ZContext ctx;
+  private final DarbaanConfiguration configuration;
   private final Consumer<Response> responseFn;
+  private final BiConsumer<String, Throwable> failFn;
   private final PermissionCache permissionCache = new PermissionCache();
-  private final Queue<String> newServers = new ConcurrentLinkedQueue<>();
+  private final RateLimiter rateLimiter = new RateLimiter();
+  private final MetricsRegistry metrics = new MetricsRegistry();
+  private final LifecycleListener lifecycle = LifecycleListeners.load();
   private final ServicePool servicePool;
-  private final BlockingQueue<ZMsg> sendQueue = new LinkedBlockingQueue<>();
-  private final Queue<ZFrame> pingQueue = new ConcurrentLinkedQueue<>();
-  private final ExecutorService executorService = Executors.newFixedThreadPool(4);
-  private ZMQ.Socket router;
+  private final Shard[] shards;
+  private final Map<String, ResponseStream> streams = new ConcurrentHashMap<>();
+  private final Map<String, InFlight> pending = new ConcurrentHashMap<>();
+  private final Map<String, ServiceStats> stats = new ConcurrentHashMap<>();
+  private final Map<String, Map<String, Mirror>> mirrors = new ConcurrentHashMap<>();
+  private final ThreadPoolExecutor executorService;
+  private final ExecutorService uploadExecutor = Executors.newCachedThreadPool(r -> {
+    Thread thread = new Thread(r, "darbaan-upload-thread");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private volatile int sendHighWaterMark = 10000;
+  private volatile int receiveHighWaterMark = 10000;
+  private volatile int batchSize = 1;
+  private volatile long pingInterval = Constants.PING_INTERVAL;
+  private final CompletableFuture<Void> ready = new CompletableFuture<>();
+  private final AtomicInteger boundShards = new AtomicInteger();
+  private volatile boolean permissionsLoaded = false;
 
-  Connector(Consumer<Response> responseFn) throws IOException {
+  /**
+   * Create the connector and start it. Binding the socket and starting the discovery are done
+   * concurrently in the background, {@link #ready()} tells when darbaan is ready.
+   * <p>
+   * The connector has one or more shards, each with its own socket thread and router socket
+   * bound to the configured port plus the shard index. A server belongs to the shard it connected
+   * to and all the messages to it are sent by that shard.
+   */
+  Connector(DarbaanConfiguration configuration, Consumer<Response> responseFn,
+            BiConsumer<String, Throwable> failFn) {
+    this.configuration = configuration;
     this.responseFn = responseFn;
-    this.ctx = new ZContext(1);
-    AdminClient adminClient = new AdminClient(ctx, permissionCache::addPermission);
-    servicePool = new ServicePool(newServers::add, adminClient::join, adminClient::leave);
-    internalThread = new Thread(this::initialize);
-    internalThread.setName("darbaan-socket-thread");
-    internalThread.start();
+    this.failFn = failFn;
+    int receivePoolSize = configuration.getReceiveThreadPoolSize();
+    this.executorService = new ThreadPoolExecutor(receivePoolSize, receivePoolSize, 0L,
+        TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    this.ctx = new ZContext(configuration.getIoThreads());
+    String identity = serverId(new Node(CHANNEL_ROLE, configuration.getIp(),
+        configuration.getPort()));
+    AdminClient adminClient = new AdminClient(ctx, identity, permissionCache::addPermission,
+        rateLimiter, this::permissionsLoaded);
+    servicePool = new ServicePool(configuration, this::newServer, adminClient::join,
+        adminClient::leave, this::serverRemoved);
+    shards = new Shard[Math.max(1, configuration.getShards())];
+    for (int i = 0; i < shards.length; i++)
+      shards[i] = new Shard(i);
+    for (Priority priority : Priority.values())
+      metrics.gauge("outbound.queue." + priority.name().toLowerCase(),
+          () -> getQueueSize(priority));
+    metrics.gauge("outbound.queue.shadow", this::getShadowQueueSize);
+    metrics.gauge("requests.inflight", pending::size);
+    metrics.gaugeGroup("servers", servicePool::serverCounts);
+    for (Shard shard : shards)
+      shard.thread.start();
     monitorThread = new Thread(this::monitor);
     monitorThread.setName("darbaan-monitor-thread");
     monitorThread.start();
+    Thread discoveryThread = new Thread(this::startDiscovery);
+    discoveryThread.setName("darbaan-discovery-start");
+    discoveryThread.start();
+  }
+
+  private void startDiscovery() {
+    try {
+      servicePool.start();
+    } catch (IOException | RuntimeException e) {
+      log.error("discovery couldn't start:", e);
+      ready.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Get the future which completes when the socket is bound and the readiness criteria of the
+   * configuration are met: the required services are available and the permissions are loaded if
+   * required. It fails if the socket couldn't be bound or discovery couldn't start
+   *
+   * @return readiness future
+   */
+  CompletableFuture<Void> ready() {
+    return ready;
+  }
+
+  /**
+   * Queue a RINTR to a newly discovered server on all the shards, only the shard which the server
+   * connected to can reach it
+   *
+   * @param serverId identity of the server
+   */
+  private void newServer(String serverId) {
+    for (Shard shard : shards)
+      shard.newServers.add(serverId);
+  }
+
+  /**
+   * Get the shard which a server connected to
+   *
+   * @param serverIdentity server identity
+   * @return shard of the server, the first shard if the server is not known
+   */
+  private Shard shardOf(ZFrame serverIdentity) {
+    if (shards.length == 1)
+      return shards[0];
+    Server server = servicePool.server(serverIdentity);
+    return Objects.isNull(server) ? shards[0] : shardOf(server);
+  }
+
+  private Shard shardOf(Server server) {
+    return shards[Math.min(server.getShard(), shards.length - 1)];
+  }
+
+  /**
+   * Fail the requests waiting for the response of a server which left or evicted, and release the
+   * load they put on it
+   *
+   * @param server removed server
+   */
+  private void serverRemoved(Server server) {
+    pending.forEach((requestId, inFlight) -> {
+      if (inFlight.server != server || Objects.isNull(responded(requestId, -1)))
+        return;
+      if (!inFlight.shadow)
+        fail(requestId, new ServerUnavailableException(requestId));
+    });
+  }
+
+  /**
+   * Fail a request, its response stream if it's a streaming request or its future otherwise
+   *
+   * @param requestId request id
+   * @param cause     failure cause
+   */
+  private void fail(String requestId, Exception cause) {
+    ResponseStream stream = streams.remove(requestId);
+    if (Objects.nonNull(stream))
+      stream.fail(cause);
+    else
+      failFn.accept(requestId, cause);
+  }
+
+  private void permissionsLoaded() {
+    permissionsLoaded = true;
+    checkReady();
+  }
+
+  /**
+   * Complete the readiness future if all the readiness criteria are met
+   */
+  private void checkReady() {
+    if (ready.isDone() || boundShards.get() < shards.length)
+      return;
+    if (configuration.isRequirePermissions() && !permissionsLoaded)
+      return;
+    for (ServiceSelector selector : configuration.getRequiredServices())
+      if (!servicePool.isServiceAvailable(selector))
+        return;
+    if (ready.complete(null))
+      log.info("darbaan is ready");
   }
 
   private static StringBuffer msgDump(ZMsg msg) {
@@ -99,78 +276,82 @@ class Connector {
 
   private void monitor() {
     while (!Thread.currentThread().isInterrupted()) {
-      servicePool.findInactiveServers().forEach(s -> {
-        if (!s.retryPing())
+      servicePool.findInactiveServers(pingInterval).forEach(s -> {
+        if (!s.retryPing()) {
+          if (Objects.nonNull(lifecycle))
+            lifecycle.serverEvicted(s, System.currentTimeMillis() - s.getLastInteract());
           servicePool.notifyRemove(s.getIdentity().toString());
+        }
         else
-          pingQueue.add(s.getIdentity());
+          shardOf(s).pingQueue.add(s.getIdentity());
       });
+      evictStaleRequests();
       try {
         // FIXME: Tricky - sleep in a loop
-        Thread.sleep(Constants.PING_INTERVAL);
+        Thread.sleep(pingInterval);
       } catch (InterruptedException e) {
         break;
       }
     }
   }
 
-  private void initialize() {
-    router = ctx.createSocket(ZMQ.ROUTER);
-    Node node = new Node(CHANNEL_ROLE, configuration.getIp(), configuration.getPort());
-    router.setIdentity(serverId(node).getBytes());
-    router.setSndHWM(10000);
-    router.setRcvHWM(10000);
-    router.setRouterMandatory(true);
-    String endpoint = "tcp://*:" + configuration.getPort();
-    router.bind(endpoint);
-    log.info("socket successfully bind to port {}", configuration.getPort());
-    workLoop();
+  private void traceSent(Envelope envelope) {
+    lifecycle.requestSent(envelope.requestId(), envelope.service(), envelope.server(),
+        envelope.queuedNanos());
   }
 
-  private void workLoop() {
-    while (!Thread.currentThread().isInterrupted()) {
-      handleNewNode();
-      ZMsg shouldSend = null;
-      try {
-        shouldSend = sendQueue.poll(1, TimeUnit.MILLISECONDS);
-        if (Objects.nonNull(shouldSend))
-          shouldSend.send(router, false);
-        ZMsg msg = recvMsg(router, ZMQ.NOBLOCK);
-        executorService.submit(() -> handleReceive(msg));
-        ZFrame shouldPing = pingQueue.poll();
-        if (Objects.nonNull(shouldPing))
-          sendPing(shouldPing);
-      } catch (ZError.IOException e) {
-        log.warn("Darbaan socket closed by interrupt");
-      } catch (ZMQException e) {
-        if (ZError.EHOSTUNREACH == e.getErrorCode()) {
-          log.error("ERROR: host not found for this message:\n {}", msgDump(shouldSend));
-        } else if (ZError.ETERM == e.getErrorCode()) {
-          log.info("exited by termination");
-          break;
-        } else
-          log.error("Unknown error:", e);
-      } catch (InterruptedException e) {
-        break;
-      }
-    }
+  /**
+   * Check if the message is a CHUNK or END message of a streaming response
+   *
+   * @param msg received message
+   * @return true if the message belongs to a stream
+   */
+  private static boolean isStreamMessage(ZMsg msg) {
+    if (Objects.isNull(msg) || msg.size() < 3)
+      return false;
+    Iterator<ZFrame> frames = msg.iterator();
+    frames.next(); // server identity
+    frames.next(); // protocol header
+    ZFrame command = frames.next();
+    return command.streq(CHUNK) || command.streq(END);
   }
 
-  private void sendPing(ZFrame serverIdentity) {
-    try {
-      //noinspection MismatchedQueryAndUpdateOfCollection
-      ZMsg m = new ZMsg();
-      m.add(PROTOCOL_HEADER);
-      m.add(PING);
-      m.wrap(serverIdentity);
-      m.send(router);
-    } catch (ZMQException e) {
-      if (ZError.EHOSTUNREACH != e.getErrorCode())
-        e.printStackTrace();
-    }
+  /**
+   * Fail a request dropped from the outbound queue because its deadline passed
+   *
+   * @param requestId request id
+   */
+  private void expire(String requestId) {
+    log.debug("request {} dropped, its deadline passed in the queue", requestId);
+    metrics.increment(Counter.EXPIRED);
+    responded(requestId, -1);
+    fail(requestId, new DeadlineExceededException(requestId));
   }
 
-  private void handleReceive(ZMsg msg) {
+  /**
+   * Cancel a request nobody waits for its response anymore. A CANCEL message is sent to the server
+   * the request sent to, in the lane of the request so it never overtakes the request itself
+   *
+   * @param requestId request id
+   */
+  void cancel(String requestId) {
+    InFlight inFlight = responded(requestId, -1);
+    if (Objects.isNull(inFlight))
+      return;
+    streams.remove(requestId);
+    sendCancel(requestId, inFlight);
+  }
+
+  private void sendCancel(String requestId, InFlight inFlight) {
+    ZMsg msg = new ZMsg();
+    msg.add(PROTOCOL_HEADER);
+    msg.add(CANCEL);
+    msg.add(requestId);
+    msg.wrap(inFlight.server.getIdentity().duplicate());
+    shardOf(inFlight.server).outbox.add(new Envelope(msg), inFlight.priority);
+  }
+
+  private void handleReceive(ZMsg msg, long receivedAt, int shard) {
     try {
       if (Objects.isNull(msg))
         return;
@@ -183,13 +364,19 @@ class Connector {
       String command = msg.popString();
       switch (command) {
         case INTR:
-          handleIntroduce(serverIdentity, msg);
+          handleIntroduce(serverIdentity, msg, shard);
           break;
         case PONG:
           servicePool.interaction(serverIdentity);
           break;
         case REP:
-          handleReply(serverIdentity, msg);
+          handleReply(serverIdentity, msg, receivedAt);
+          break;
+        case CHUNK:
+          handleChunk(serverIdentity, msg);
+          break;
+        case END:
+          handleEnd(serverIdentity, msg);
           break;
         default:
           log.error("Error: Unknown message received with command {}", command);
@@ -199,24 +386,159 @@ class Connector {
     }
   }
 
-  private void handleReply(ZFrame serverIdentity, ZMsg msg) {
+  private void handleReply(ZFrame serverIdentity, ZMsg msg, long receivedAt) {
+    servicePool.interaction(serverIdentity);
+    String requestId = msg.popString();
+    int status = readStatus(msg.pop());
+    InFlight inFlight = responded(requestId, status);
+    if (Objects.nonNull(inFlight) && inFlight.shadow)
+      return; // reply of a mirrored request
+    metrics.increment(Counter.RECEIVED);
+    LatencyBreakdown breakdown = Objects.isNull(inFlight) ? null : inFlight.breakdown;
+    if (Objects.nonNull(breakdown)) {
+      breakdown.received(receivedAt);
+      breakdown.handled();
+    }
+    byte[] payload = msg.pop().getData();
+    PayloadCodec codec = PayloadCodecs.JSON;
+    TraceContext trace = null;
+    String header = msg.popString();
+    while (Objects.nonNull(header)) {
+      String value = msg.popString();
+      if (HDR_CODEC.equals(header))
+        codec = findCodec(value);
+      else if (HDR_TRACE.equals(header))
+        trace = parseTrace(requestId, value);
+      header = msg.popString();
+    }
+    ResponseStream stream = streams.remove(requestId);
+    if (Objects.nonNull(stream)) { // server replied the whole response at once
+      stream.offer(payload);
+      stream.end(status);
+    } else
+      responseFn.accept(new Response(requestId, status, payload, codec, breakdown, trace));
+  }
+
+  private static TraceContext parseTrace(String requestId, String traceparent) {
+    try {
+      return TraceContext.parse(traceparent);
+    } catch (IllegalArgumentException e) {
+      log.warn("invalid trace context in the reply of {}: {}", requestId, traceparent);
+      return null;
+    }
+  }
+
+  private void handleChunk(ZFrame serverIdentity, ZMsg msg) {
     servicePool.interaction(serverIdentity);
-    Response response = new Response(
-        msg.popString(),
-        ByteBuffer.wrap(msg.pop().getData()).getInt(),
-        msg.pop().getData());
-    responseFn.accept(response);
+    ResponseStream stream = streams.get(msg.popString());
+    if (Objects.nonNull(stream))
+      stream.offer(msg.pop().getData());
+  }
+
+  private void handleEnd(ZFrame serverIdentity, ZMsg msg) {
+    servicePool.interaction(serverIdentity);
+    String requestId = msg.popString();
+    int status = readStatus(msg.pop());
+    responded(requestId, status);
+    ResponseStream stream = streams.remove(requestId);
+    if (Objects.nonNull(stream)) {
+      metrics.increment(Counter.RECEIVED);
+      stream.end(status);
+    }
   }
 
-  private void handleIntroduce(ZFrame serverIdentity, ZMsg msg) {
+  /**
+   * Release the load the request put on its server and record its latency and status in the
+   * stats of its service
+   *
+   * @param requestId id of the request which its response arrived or it failed
+   * @param status    status of the response, negative if request failed before any response
+   * @return the request waiting for the response, null if it's not known
+   */
+  private InFlight responded(String requestId, int status) {
+    InFlight inFlight = pending.remove(requestId);
+    if (Objects.isNull(inFlight))
+      return null;
+    inFlight.server.responseReceived();
+    if (status >= 0) {
+      long latency = System.nanoTime() - inFlight.sentAt;
+      inFlight.stats.record(latency, status);
+      inFlight.serviceLatency.record(latency);
+      if (Objects.nonNull(inFlight.actionLatency))
+        inFlight.actionLatency.record(latency);
+      if (Objects.nonNull(lifecycle))
+        lifecycle.replyReceived(requestId, inFlight.service, inFlight.server, status, latency);
+    }
+    return inFlight;
+  }
+
+  private PayloadCodec findCodec(String codecId) {
+    PayloadCodec codec = configuration.getCodec(codecId);
+    if (Objects.nonNull(codec))
+      return codec;
+    log.warn("unknown codec {} in reply, payload decoded as raw", codecId);
+    return PayloadCodecs.RAW;
+  }
+
+  /**
+   * Decode the status frame of REP message, a big-endian 4 bytes integer, directly from the frame
+   * data
+   *
+   * @param statusFrame status frame
+   * @return status code
+   */
+  static int readStatus(ZFrame statusFrame) {
+    byte[] b = statusFrame.getData();
+    return (b[0] & 0xFF) << 24 | (b[1] & 0xFF) << 16 | (b[2] & 0xFF) << 8 | (b[3] & 0xFF);
+  }
+
+  /**
+   * Handle INTR message, which is a list of service name and version pairs. A server may advertise
+   * its weight by a pair named {@link Constants#INTR_WEIGHT}
+   *
+   * @param serverIdentity server which introduced itself
+   * @param msg            rest of the message
+   * @param shard          shard which the message arrived on
+   */
+  private void handleIntroduce(ZFrame serverIdentity, ZMsg msg, int shard) {
+    servicePool.setShard(serverIdentity, shard);
     String serviceName = msg.popString();
     while (Objects.nonNull(serviceName)) {
       String version = msg.popString();
-      Service service = new Service(serviceName, version);
-      servicePool.addService(serverIdentity, service);
+      if (INTR_WEIGHT.equals(serviceName))
+        setWeight(serverIdentity, version);
+      else
+        servicePool.addService(serverIdentity, new Service(serviceName, version));
       serviceName = msg.popString();
     }
     servicePool.interaction(serverIdentity);
+    checkReady();
+  }
+
+  /**
+   * Set the weight advertised by a server, an invalid weight is logged and the server keeps the
+   * default weight
+   *
+   * @param serverIdentity server which advertised the weight
+   * @param weight         advertised weight
+   */
+  private void setWeight(ZFrame serverIdentity, String weight) {
+    int value;
+    try {
+      value = Integer.parseInt(weight);
+    } catch (NumberFormatException e) {
+      value = 0;
+    }
+    if (value > Constants.MAX_WEIGHT) {
+      log.warn("weight {} advertised by {} is capped to {}", weight, serverIdentity,
+          Constants.MAX_WEIGHT);
+      value = Constants.MAX_WEIGHT;
+    }
+    if (value > 0)
+      servicePool.setWeight(serverIdentity, value);
+    else
+      log.warn("invalid weight {} advertised by {}, default weight is used", weight,
+          serverIdentity);
   }
 
   /**
@@ -237,53 +559,505 @@ class Connector {
   }
 
   /**
-   * Check if a new node discovered and send RINTR message to it
+   * Create a zeroMQ message from request and put it to outbox queue. If the request has a
+   * payload stream, the payload is uploaded in chunks after the request message, failing to read
+   * the stream fails the request
+   *
+   * @param request request to send
+   * @throws UnknownServiceException if ordered service is unknown and not yet recognized
+   * @throws QueueFullException      if the lane of the request priority is full
+   * @throws IOException             if encoding the payload by the codec of the service failed
    */
-  private void handleNewNode() {
-    String serverId = newServers.poll();
-    if (Objects.isNull(serverId))
+  void send(Request request) throws UnknownServiceException, RoleHasNotPermissionException,
+      RateLimitExceededException, QueueFullException, IOException {
+    InFlight inFlight = route(request, false);
+    if (Objects.isNull(request.getPayloadStream())) {
+      enqueue(request, request.getRequestId(), inFlight.service, inFlight.server,
+          encode(request, request.getRequestId(), inFlight.service.version(),
+              inFlight.server.getIdentity()));
+      mirror(request, inFlight.service);
+    } else
+      upload(request, inFlight.service, inFlight.server);
+  }
+
+  /**
+   * Send a copy of the request to the shadow version of its service, if a mirror rule matches
+   * and its rate limit is not exceeded. The copy has its own request id and its reply is discarded,
+   * it is dropped if the shadow budget of the outbox is exhausted
+   *
+   * @param request request which already sent to its service
+   * @param service service the request sent to
+   */
+  private void mirror(Request request, Service service) {
+    if (mirrors.isEmpty())
       return;
-    try {
-      //noinspection MismatchedQueryAndUpdateOfCollection
-      ZMsg m = new ZMsg();
-      m.add(PROTOCOL_HEADER);
-      m.add(RINTR);
-      m.wrap(new ZFrame(serverId));
-      m.send(router);
-    } catch (ZMQException e) {
-      if (e.getErrorCode() == ZError.EHOSTUNREACH)
-        newServers.add(serverId); //retry it later
+    Map<String, Mirror> versions = mirrors.get(service.name());
+    Mirror mirror = Objects.isNull(versions) ? null : versions.get(service.version());
+    if (Objects.isNull(mirror) || !mirror.tryAcquire())
+      return;
+    Service shadow = servicePool.exact(request.getServiceName(), mirror.getShadowVersion());
+    Server server = Objects.isNull(shadow) ? null : shadow.nextServer(request.getRoutingKey());
+    if (Objects.isNull(server))
+      return;
+    String shadowRequestId = id(Constants.ID_SHADOW_PREFIX);
+    server.requestSent();
+    pending.put(shadowRequestId, new InFlight(server, shadow, stats(shadow.id()),
+        metrics.serviceLatency(shadow.id()), null, null, Priority.LOW, true, true, false,
+        System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Constants.SHADOW_TIMEOUT)));
+    Envelope copy = new Envelope(
+        encode(request, shadowRequestId, shadow.version(), server.getIdentity()),
+        shadowRequestId, request, null, shadow, server);
+    if (!shardOf(server).outbox.offerShadow(copy))
+      responded(shadowRequestId, -1);
+  }
+
+  /**
+   * Put a request message in the lane of its priority, in the shard of its server
+   *
+   * @param request   request to send
+   * @param requestId request id of the message
+   * @param service   service the request routed to
+   * @param server    server the request routed to
+   * @param msg       encoded request message
+   * @throws QueueFullException if the lane of the request priority is full
+   */
+  private void enqueue(Request request, String requestId, Service service, Server server,
+                       ZMsg msg) throws QueueFullException {
+    LatencyBreakdown breakdown = request.breakdown();
+    if (Objects.nonNull(breakdown))
+      breakdown.enqueued();
+    Envelope envelope = new Envelope(msg, requestId, request, breakdown, service, server);
+    if (!shardOf(server).outbox.offer(envelope, request.getPriority())) {
+      responded(requestId, -1);
+      metrics.increment(Counter.REJECTED);
+      throw new QueueFullException(request);
+    }
+    metrics.increment(Counter.SENT);
+    if (Objects.nonNull(lifecycle))
+      lifecycle.requestEnqueued(requestId, service, server, request.getPriority());
+  }
+
+  /**
+   * Fail the requests which are not responded until they expire: the deadline of the request or
+   * the request timeout of the configuration if it has no deadline and the timeout is set.
+   * Mirrored requests are dropped within {@link Constants#SHADOW_TIMEOUT}, they counted as errors
+   * of the shadow version
+   */
+  private void evictStaleRequests() {
+    long now = System.nanoTime();
+    pending.forEach((requestId, inFlight) -> {
+      if (!inFlight.expires || inFlight.expiresAt - now > 0)
+        return;
+      if (inFlight.shadow) {
+        if (pending.remove(requestId, inFlight)) {
+          inFlight.server.responseReceived();
+          inFlight.stats.record(now - inFlight.sentAt, GATEWAY_TIMEOUT);
+        }
+        return;
+      }
+      ResponseStream stream = streams.get(requestId);
+      if (Objects.isNull(responded(requestId, -1)))
+        return;
+      log.debug("request {} expired without response", requestId);
+      metrics.increment(Counter.TIMED_OUT);
+      sendCancel(requestId, inFlight);
+      streams.remove(requestId);
+      Exception e = inFlight.deadline ? new DeadlineExceededException(requestId)
+          : new RequestTimeoutException(requestId, configuration.getRequestTimeout());
+      if (Objects.nonNull(stream))
+        stream.fail(e);
       else
-        log.error("Error occurred while sending RINTR to {}:", serverId, e);
+        failFn.accept(requestId, e);
+    });
+  }
+
+  int getSendHighWaterMark() {
+    return sendHighWaterMark;
+  }
+
+  int getReceiveHighWaterMark() {
+    return receiveHighWaterMark;
+  }
+
+  /**
+   * Change the high water marks of the router sockets. Sockets are not thread safe, so the change
+   * is applied by the socket thread of each shard. ZeroMQ uses the new marks only for the pipes
+   * of the servers connecting afterwards, the connected ones keep their old marks
+   *
+   * @param send    send high water mark
+   * @param receive receive high water mark
+   */
+  void setHighWaterMarks(int send, int receive) {
+    sendHighWaterMark = send;
+    receiveHighWaterMark = receive;
+    for (Shard shard : shards) {
+      shard.socketTasks.add(() -> {
+        shard.router.setSndHWM(send);
+        shard.router.setRcvHWM(receive);
+        log.info("high water marks of shard {} changed to send {} receive {} for new connections",
+            shard.index, send, receive);
+      });
     }
   }
 
+  int getBatchSize() {
+    return batchSize;
+  }
+
   /**
-   * Create a zeroMQ message from request and put it to outbox queue
+   * Set the maximum messages the socket thread sends before checking for received messages
+   *
+   * @param batchSize batch size, at least 1
+   */
+  void setBatchSize(int batchSize) {
+    this.batchSize = Math.max(1, batchSize);
+  }
+
+  long getPingInterval() {
+    return pingInterval;
+  }
+
+  void setPingInterval(long pingInterval) {
+    this.pingInterval = pingInterval;
+  }
+
+  /**
+   * Get the number of messages waiting to be sent in the lane of a priority, in all the shards
+   *
+   * @param priority priority of the lane
+   * @return number of the waiting messages
+   */
+  int getQueueSize(Priority priority) {
+    int size = 0;
+    for (Shard shard : shards)
+      size += shard.outbox.size(priority);
+    return size;
+  }
+
+  private int getShadowQueueSize() {
+    int size = 0;
+    for (Shard shard : shards)
+      size += shard.outbox.shadowSize();
+    return size;
+  }
+
+  int getLaneCapacity() {
+    return shards[0].outbox.getCapacity();
+  }
+
+  /**
+   * Change the capacity of the lanes of all the shards
+   *
+   * @param capacity capacity of each lane
+   */
+  void setLaneCapacity(int capacity) {
+    for (Shard shard : shards)
+      shard.outbox.setCapacity(capacity);
+  }
+
+  int getShardCount() {
+    return shards.length;
+  }
+
+  ThreadPoolExecutor getExecutorService() {
+    return executorService;
+  }
+
+  ServicePool getServicePool() {
+    return servicePool;
+  }
+
+  PermissionCache getPermissionCache() {
+    return permissionCache;
+  }
+
+  int getInflightCount() {
+    return pending.size();
+  }
+
+  /**
+   * Get the lifecycle listener
+   *
+   * @return lifecycle listener or null if there is none
+   */
+  LifecycleListener getLifecycle() {
+    return lifecycle;
+  }
+
+  MetricsRegistry getMetrics() {
+    return metrics;
+  }
+
+  RateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  void setMirror(Mirror mirror) {
+    log.info("mirror set: {}", mirror);
+    mirrors.computeIfAbsent(mirror.getServiceName(), n -> new ConcurrentHashMap<>())
+        .put(mirror.getVersion(), mirror);
+  }
+
+  void removeMirror(String name, String version) {
+    Map<String, Mirror> versions = mirrors.get(name);
+    if (Objects.nonNull(versions) && Objects.nonNull(versions.remove(version)))
+      log.info("mirror of {}-{} removed", name, version);
+  }
+
+  Collection<Mirror> getMirrors() {
+    return mirrors.values().stream().flatMap(m -> m.values().stream())
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Send a request with an UPLOAD header followed by its payload stream as a sequence of CHUNK
+   * messages and an END message. The head is queued here and the stream is read by the upload
+   * threads, see {@link Upload}
    *
    * @param request request to send
+   * @param service resolved service
+   * @param server  server the request routed to
+   * @throws QueueFullException if the lane of the request priority is full
+   */
+  private void upload(Request request, Service service, Server server)
+      throws QueueFullException {
+    String requestId = request.getRequestId();
+    ZMsg head = encode(request, requestId, service.version(), server.getIdentity());
+    head.add(HDR_UPLOAD);
+    head.add(String.valueOf(configuration.getUploadChunkSize()));
+    enqueue(request, requestId, service, server, head);
+    new Upload(request, server.getIdentity()).schedule();
+  }
+
+  /**
+   * Create a zeroMQ message from request asking for a streaming response and put it to outbox
+   * queue. The chunks of the response are delivered to the given stream
+   *
+   * @param request request to send
+   * @param stream  stream to deliver the response into
    * @throws UnknownServiceException if ordered service is unknown and not yet recognized
+   * @throws QueueFullException      if the lane of the request priority is full
+   * @throws IOException             if encoding the payload by the codec of the service failed
+   */
+  void send(Request request, ResponseStream stream) throws UnknownServiceException,
+      RoleHasNotPermissionException, RateLimitExceededException, QueueFullException,
+      IOException {
+    InFlight inFlight = route(request, true);
+    ZFrame serverFrame = inFlight.server.getIdentity();
+    String requestId = request.getRequestId();
+    ZMsg msg = encode(request, requestId, inFlight.service.version(), serverFrame);
+    msg.add(HDR_STREAM);
+    msg.add(String.valueOf(stream.window()));
+    stream.bind(credit -> sendCredit(serverFrame.duplicate(), requestId, credit),
+        () -> cancel(requestId));
+    streams.put(requestId, stream);
+    try {
+      enqueue(request, requestId, inFlight.service, inFlight.server, msg);
+    } catch (QueueFullException e) {
+      streams.remove(requestId);
+      throw e;
+    }
+    stream.sent();
+  }
+
+  /**
+   * Create a zeroMQ message from request to a specific server under the given request id and put
+   * it to outbox queue. Used to send the same request to multiple servers
+   *
+   * @param request   request to send
+   * @param requestId request id of this copy of the request
+   * @param service   resolved service
+   * @param server    server to send the copy to
+   * @throws QueueFullException if the lane of the request priority is full
    */
-  void send(Request request) throws UnknownServiceException, RoleHasNotPermissionException {
-    String id = serviceId(request.getServiceName(), request.getServiceVersion());
+  void send(Request request, String requestId, Service service, Server server)
+      throws QueueFullException {
+    enqueue(request, requestId, service, server,
+        encode(request, requestId, service.version(), server.getIdentity()));
+  }
+
+  /**
+   * Check the permission of the request and return its service, the request is going to be sent
+   * to all the servers of the service
+   *
+   * @param request request to send
+   * @return service of the request
+   * @throws UnknownServiceException if ordered service is unknown and not yet recognized
+   * @throws IOException             if encoding the payload by the codec of the service failed
+   */
+  Service routeAll(Request request) throws UnknownServiceException,
+      RoleHasNotPermissionException, RateLimitExceededException, IOException {
+    Service service = resolve(request);
+    applyServiceCodec(request, service);
+    return service;
+  }
+
+  /**
+   * Check the permission of the request and pick the server to send it to. The request counted
+   * in the load of the server until its response arrives or it expires
+   *
+   * @param request   request to send
+   * @param streaming true if the response is streamed, so it expires only by its deadline
+   * @return the request waiting for the response, holding its server and resolved service
+   * @throws UnknownServiceException if ordered service is unknown and not yet recognized
+   * @throws IOException             if encoding the payload by the codec of the service failed
+   */
+  private InFlight route(Request request, boolean streaming) throws UnknownServiceException,
+      RoleHasNotPermissionException, RateLimitExceededException, IOException {
+    Service service = resolve(request);
+    Server server = service.nextServer(request.getRoutingKey());
+    if (Objects.isNull(server))
+      throw new UnknownServiceException(request);
+    applyServiceCodec(request, service);
+    server.requestSent();
+    InFlight inFlight = new InFlight(server, service, stats(service.id()),
+        metrics.serviceLatency(service.id()), metrics.actionLatency(service.id(),
+        request.getActionCategory(), request.getActionName()),
+        request.breakdown(), request.getPriority(), false,
+        request.hasDeadline() || (!streaming && configuration.getRequestTimeout() > 0),
+        request.hasDeadline(), request.hasDeadline() ? request.deadline()
+        : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(configuration.getRequestTimeout()));
+    pending.put(request.getRequestId(), inFlight);
+    return inFlight;
+  }
+
+  /**
+   * Apply the codec bound to the resolved service in the configuration, unless the request has
+   * its own codec
+   *
+   * @param request request to send
+   * @param service resolved service of the request
+   * @throws IOException if encoding the payload by the codec of the service failed
+   */
+  private void applyServiceCodec(Request request, Service service) throws IOException {
+    request.setServiceCodec(configuration.getServiceCodec(service.name(), service.version()));
+  }
+
+  /**
+   * Find the service of the request and apply its traffic split if there is any. Then check if
+   * the role of the request has access to the action of the chosen service and the request is
+   * within its rate limits, so a diverted request is checked against the version it's sent to.
+   * The request itself is not changed, the chosen service is returned
+   *
+   * @param request request to check
+   * @return service of the request
+   * @throws RoleHasNotPermissionException if role has not access to the action
+   * @throws RateLimitExceededException    if a rate limit of the request exceeded
+   * @throws UnknownServiceException       if ordered service is unknown and not yet recognized
+   */
+  private Service resolve(Request request) throws RoleHasNotPermissionException,
+      RateLimitExceededException, UnknownServiceException {
+    Service service = servicePool.resolve(request);
+    if (Objects.nonNull(service) && !service.isEmpty())
+      service = servicePool.split(service, request.getRoutingKey());
+    String id = Objects.isNull(service)
+        ? serviceId(request.getServiceName(), request.getServiceVersion()) : service.id();
     if (!permissionCache.hasAccess(id, request.getActionCategory(), request.getActionName(),
-        request.getRole()))
+        request.getRole())) {
+      metrics.increment(Counter.PERMISSION_DENIED);
+      if (Objects.nonNull(lifecycle))
+        lifecycle.permissionRejected(request, id);
       throw new RoleHasNotPermissionException(request.getRole(), id, request.getActionCategory(),
           request.getActionName());
-    ZFrame serverFrame = servicePool.nextServer(id);
-    if (Objects.isNull(serverFrame))
+    }
+    try {
+      rateLimiter.check(request, id);
+    } catch (RateLimitExceededException e) {
+      metrics.increment(Counter.REJECTED);
+      throw e;
+    }
+    if (Objects.isNull(service) || service.isEmpty()) {
+      metrics.increment(Counter.UNKNOWN_SERVICE);
       throw new UnknownServiceException(request);
+    }
+    return service;
+  }
+
+  private ServiceStats stats(String serviceId) {
+    ServiceStats serviceStats = stats.get(serviceId);
+    if (Objects.isNull(serviceStats)) {
+      serviceStats = new ServiceStats(serviceId);
+      ServiceStats existing = stats.putIfAbsent(serviceId, serviceStats);
+      if (Objects.nonNull(existing))
+        serviceStats = existing;
+    }
+    return serviceStats;
+  }
+
+  /**
+   * Get the stats of all the services requests sent to
+   *
+   * @return stats by service id
+   */
+  Map<String, ServiceStats> getStats() {
+    return Collections.unmodifiableMap(stats);
+  }
+
+  /**
+   * Add or replace the traffic split rule of a service version
+   *
+   * @param split traffic split rule
+   */
+  void setTrafficSplit(TrafficSplit split) {
+    servicePool.setTrafficSplit(split);
+  }
+
+  /**
+   * Remove the traffic split rule of a service version
+   *
+   * @param name        service name
+   * @param fromVersion version which its traffic is split
+   */
+  void removeTrafficSplit(String name, String fromVersion) {
+    servicePool.removeTrafficSplit(name, fromVersion);
+  }
+
+  /**
+   * Get the traffic split rules
+   *
+   * @return traffic split rules
+   */
+  Collection<TrafficSplit> getTrafficSplits() {
+    return servicePool.getTrafficSplits();
+  }
+
+  static ZMsg encode(Request request, String requestId, ZFrame serverFrame) {
+    return encode(request, requestId, request.getServiceVersion(), serverFrame);
+  }
+
+  static ZMsg encode(Request request, String requestId, String serviceVersion,
+                     ZFrame serverFrame) {
     ZMsg msg = new ZMsg();
     msg.add(Constants.PROTOCOL_HEADER);
     msg.add(Constants.REQ);
-    msg.add(request.getRequestId());
+    msg.add(requestId);
     msg.add(request.getServiceName());
-    msg.add(request.getServiceVersion());
+    msg.add(serviceVersion);
     msg.add(request.getActionCategory());
     msg.add(request.getActionName());
-    msg.add(request.getPayloadBytes());
+    msg.add(new BufferFrame(request.payload()));
+    PayloadCodec codec = request.getCodec();
+    if (codec != PayloadCodecs.JSON) {
+      msg.add(HDR_CODEC);
+      msg.add(codec.id());
+    }
+    TraceContext trace = request.getTraceContext();
+    if (Objects.nonNull(trace)) {
+      msg.add(HDR_TRACE);
+      msg.add(trace.child().toString());
+    }
+    msg.wrap(serverFrame);
+    return msg;
+  }
+
+  private void sendCredit(ZFrame serverFrame, String requestId, int credit) {
+    ZMsg msg = new ZMsg();
+    msg.add(PROTOCOL_HEADER);
+    msg.add(CREDIT);
+    msg.add(requestId);
+    msg.add(String.valueOf(credit));
     msg.wrap(serverFrame);
-    sendQueue.add(msg);
+    shardOf(serverFrame).outbox.add(new Envelope(msg), Priority.HIGH);
   }
 
   /**
@@ -297,11 +1071,291 @@ class Connector {
     return servicePool.isServiceAvailable(name, version);
   }
 
+  /**
+   * A request waiting for its response
+   */
+  private static final class InFlight {
+
+    private final Server server;
+    private final Service service;
+    private final ServiceStats stats;
+    private final LatencyHistogram serviceLatency;
+    private final LatencyHistogram actionLatency;
+    private final LatencyBreakdown breakdown;
+    private final Priority priority;
+    private final boolean shadow;
+    private final long sentAt = System.nanoTime();
+    private final boolean expires;
+    private final boolean deadline;
+    private final long expiresAt;
+
+    InFlight(Server server, Service service, ServiceStats stats, LatencyHistogram serviceLatency,
+             LatencyHistogram actionLatency, LatencyBreakdown breakdown, Priority priority,
+             boolean shadow, boolean expires, boolean deadline, long expiresAt) {
+      this.server = server;
+      this.service = service;
+      this.stats = stats;
+      this.serviceLatency = serviceLatency;
+      this.actionLatency = actionLatency;
+      this.breakdown = breakdown;
+      this.priority = priority;
+      this.shadow = shadow;
+      this.expires = expires;
+      this.deadline = deadline;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * Upload of a payload stream, read by the upload threads. The chunks not yet written on the
+   * socket never exceed the upload memory limit: reading stops when they reach it and each chunk
+   * written by the socket thread schedules reading again, so no thread waits for the socket. The
+   * upload stops if the request is cancelled, and a failure of reading the stream sends a CANCEL
+   * to the server and fails the request
+   */
+  private final class Upload implements Runnable {
+
+    private final Request request;
+    private final String requestId;
+    private final ZFrame serverFrame;
+    private final OutboundQueue outbox;
+    private final InputStream in;
+    private final int chunkSize;
+    private final AtomicInteger credit;
+    private final AtomicBoolean reading = new AtomicBoolean();
+    private volatile boolean done;
+
+    Upload(Request request, ZFrame serverFrame) {
+      this.request = request;
+      this.requestId = request.getRequestId();
+      this.serverFrame = serverFrame;
+      this.outbox = shardOf(serverFrame).outbox;
+      this.in = request.getPayloadStream();
+      this.chunkSize = configuration.getUploadChunkSize();
+      this.credit =
+          new AtomicInteger(Math.max(1, configuration.getUploadMemoryLimit() / chunkSize));
+    }
+
+    /**
+     * Read the stream on an upload thread, unless it's already being read
+     */
+    void schedule() {
+      if (!done && reading.compareAndSet(false, true))
+        uploadExecutor.execute(this);
+    }
+
+    private void chunkSent() {
+      credit.incrementAndGet();
+      schedule();
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!done && credit.get() > 0) {
+          if (!pending.containsKey(requestId)) { // cancelled or expired
+            finish();
+            return;
+          }
+          byte[] chunk = new byte[chunkSize];
+          int size = readChunk(in, chunk);
+          if (size == 0) {
+            send(END, null, null);
+            finish();
+            return;
+          }
+          credit.decrementAndGet();
+          send(CHUNK, size == chunkSize ? chunk : Arrays.copyOf(chunk, size), this::chunkSent);
+        }
+      } catch (IOException | RuntimeException e) {
+        log.warn("reading payload stream of {} failed:", requestId, e);
+        if (Objects.nonNull(responded(requestId, -1))) {
+          send(CANCEL, null, null);
+          failFn.accept(requestId, e);
+        }
+        finish();
+      } finally {
+        reading.set(false);
+      }
+      if (credit.get() > 0)
+        schedule(); // a chunk written while the reading was stopping
+    }
+
+    private void send(String command, byte[] chunk, Runnable onSent) {
+      ZMsg msg = new ZMsg();
+      msg.add(PROTOCOL_HEADER);
+      msg.add(command);
+      msg.add(requestId);
+      if (Objects.nonNull(chunk))
+        msg.add(chunk);
+      msg.wrap(serverFrame.duplicate());
+      outbox.add(new Envelope(msg, onSent), request.getPriority());
+    }
+
+    private int readChunk(InputStream in, byte[] chunk) throws IOException {
+      int size = 0;
+      int n = in.read(chunk, 0, chunk.length);
+      while (n >= 0) {
+        size += n;
+        if (size == chunk.length)
+          break;
+        n = in.read(chunk, size, chunk.length - size);
+      }
+      return size;
+    }
+
+    private void finish() {
+      done = true;
+      try {
+        in.close();
+      } catch (IOException e) {
+        log.warn("closing payload stream of {} failed:", requestId, e);
+      }
+    }
+  }
+
+  /**
+   * A socket thread with its own router socket and outbound queue. Sockets are not thread safe,
+   * everything touching the router is done by the thread of the shard
+   */
+  private final class Shard {
+
+    private final int index;
+    private final int port;
+    private final Thread thread;
+    private final OutboundQueue outbox = new OutboundQueue(configuration.getLaneCapacity(),
+        configuration.isStrictPriority());
+    private final Queue<String> newServers = new ConcurrentLinkedQueue<>();
+    private final Queue<ZFrame> pingQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> socketTasks = new ConcurrentLinkedQueue<>();
+    private ZMQ.Socket router;
+
+    Shard(int index) {
+      this.index = index;
+      this.port = configuration.getPort() + index;
+      thread = new Thread(this::initialize);
+      thread.setName(shards.length > 1 ? "darbaan-socket-thread-" + index
+          : "darbaan-socket-thread");
+    }
+
+    private void initialize() {
+      router = ctx.createSocket(ZMQ.ROUTER);
+      Node node = new Node(CHANNEL_ROLE, configuration.getIp(), port);
+      router.setIdentity(serverId(node).getBytes());
+      router.setSndHWM(sendHighWaterMark);
+      router.setRcvHWM(receiveHighWaterMark);
+      router.setRouterMandatory(true);
+      String endpoint = String.format("tcp://%s:%d", configuration.getBindAddress(), port);
+      try {
+        router.bind(endpoint);
+      } catch (ZMQException e) {
+        log.error("couldn't bind socket to port {}:", port, e);
+        ready.completeExceptionally(e);
+        return;
+      }
+      log.info("socket successfully bind to port {}", port);
+      boundShards.incrementAndGet();
+      checkReady();
+      workLoop();
+    }
+
+    private void workLoop() {
+      while (!Thread.currentThread().isInterrupted()) {
+        handleNewNode();
+        runSocketTasks();
+        Envelope shouldSend = null;
+        try {
+          shouldSend = outbox.poll(1, TimeUnit.MILLISECONDS);
+          int sent = 0;
+          while (Objects.nonNull(shouldSend)) {
+            if (shouldSend.isExpired()) {
+              String expiredId = shouldSend.requestId();
+              executorService.submit(() -> expire(expiredId));
+            } else {
+              shouldSend.send(router);
+              if (Objects.nonNull(lifecycle) && Objects.nonNull(shouldSend.requestId()))
+                traceSent(shouldSend);
+            }
+            shouldSend = ++sent < batchSize ? outbox.poll(0, TimeUnit.MILLISECONDS) : null;
+          }
+          ZMsg msg = recvMsg(router, ZMQ.NOBLOCK);
+          if (isStreamMessage(msg))
+            handleReceive(msg, System.nanoTime(), index); // chunks of a stream must be in order
+          else if (Objects.nonNull(msg)) {
+            long receivedAt = System.nanoTime();
+            executorService.submit(() -> handleReceive(msg, receivedAt, index));
+          }
+          ZFrame shouldPing = pingQueue.poll();
+          if (Objects.nonNull(shouldPing))
+            sendPing(shouldPing);
+        } catch (ZError.IOException e) {
+          log.warn("Darbaan socket closed by interrupt");
+        } catch (ZMQException e) {
+          if (ZError.EHOSTUNREACH == e.getErrorCode()) {
+            log.error("ERROR: host not found for this message:\n {}",
+                msgDump(Objects.isNull(shouldSend) ? null : shouldSend.msg()));
+          } else if (ZError.ETERM == e.getErrorCode()) {
+            log.info("exited by termination");
+            break;
+          } else
+            log.error("Unknown error:", e);
+        } catch (InterruptedException e) {
+          break;
+        }
+      }
+    }
+
+    private void runSocketTasks() {
+      Runnable task = socketTasks.poll();
+      while (Objects.nonNull(task)) {
+        task.run();
+        task = socketTasks.poll();
+      }
+    }
+
+    private void sendPing(ZFrame serverIdentity) {
+      try {
+        //noinspection MismatchedQueryAndUpdateOfCollection
+        ZMsg m = new ZMsg();
+        m.add(PROTOCOL_HEADER);
+        m.add(PING);
+        m.wrap(serverIdentity);
+        m.send(router);
+      } catch (ZMQException e) {
+        if (ZError.EHOSTUNREACH != e.getErrorCode())
+          e.printStackTrace();
+      }
+    }
+
+    /**
+     * Check if a new node discovered and send RINTR message to it
+     */
+    private void handleNewNode() {
+      String serverId = newServers.poll();
+      if (Objects.isNull(serverId))
+        return;
+      try {
+        //noinspection MismatchedQueryAndUpdateOfCollection
+        ZMsg m = new ZMsg();
+        m.add(PROTOCOL_HEADER);
+        m.add(RINTR);
+        m.wrap(new ZFrame(serverId));
+        m.send(router);
+      } catch (ZMQException e) {
+        if (e.getErrorCode() != ZError.EHOSTUNREACH)
+          log.error("Error occurred while sending RINTR to {}:", serverId, e);
+        else if (Objects.isNull(servicePool.server(new ZFrame(serverId))))
+          newServers.add(serverId); //retry it later, unless it connected to another shard
+      }
+    }
+  }
+
   /**
    * Destroy object gracefully
    */
   void destroy() {
-    internalThread.interrupt();
+    for (Shard shard : shards)
+      shard.thread.interrupt();
     monitorThread.interrupt();
     try {
       executorService.awaitTermination(1, TimeUnit.SECONDS);
@@ -309,6 +1363,7 @@ class Connector {
       e.printStackTrace();
     }
     executorService.shutdown();
+    uploadExecutor.shutdownNow();
     servicePool.destroy();
     ctx.destroy();
   }
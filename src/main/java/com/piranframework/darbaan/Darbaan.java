@@ -19,51 +19,145 @@
 
 package com.piranframework.darbaan;
 
+import com.piranframework.darbaan.exception.DeadlineExceededException;
+import com.piranframework.darbaan.exception.QueueFullException;
+import com.piranframework.darbaan.metrics.MetricsRegistry;
+import com.piranframework.darbaan.model.Server;
+import com.piranframework.darbaan.model.Service;
+import com.piranframework.darbaan.spi.LifecycleListener;
 import com.piranframework.darbaan.util.Constants;
+import com.piranframework.darbaan.util.TokenBucket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.piranframework.darbaan.util.IdGenerator.id;
+import static com.piranframework.darbaan.util.IdentityUtil.serviceId;
 
 /**
  * The starting point to connect, send message and get the result from servers.
  * Darbaan automatically discovers and connects to servers, routes the message to them and
  * routes back the responses to client.
- * An instance of this class is enough for a channel application.
+ * An instance of this class is enough for a channel application. Instances are independent, several
+ * of them can run in one JVM with their own configurations, like one for each network interface.
  *
  * @author Isa Hekmatizadeh
  */
 public final class Darbaan {
 
   private static final Logger log = LoggerFactory.getLogger(Darbaan.class);
-  static DarbaanConfiguration configuration;
+  private final DarbaanConfiguration configuration;
   private final Map<String, CompletableFuture<Response>> requests = new ConcurrentHashMap<>();
   private final Connector connector;
-  private final ExecutorService executorService;
+  private final ThreadPoolExecutor executorService;
+  private final ScheduledThreadPoolExecutor timeoutService;
+  private final List<ObjectName> mbeans = new ArrayList<>();
 
-  private Darbaan() throws IOException {
-    executorService = Executors.newFixedThreadPool(configuration.getSendThreadPoolSize());
-    connector = new Connector(this::handleReceive);
+  private Darbaan(DarbaanConfiguration configuration) {
+    this.configuration = configuration;
+    int sendPoolSize = configuration.getSendThreadPoolSize();
+    executorService = new ThreadPoolExecutor(sendPoolSize, sendPoolSize, 0L,
+        TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    timeoutService = new ScheduledThreadPoolExecutor(1, r -> {
+      Thread thread = new Thread(r, "darbaan-timeout-thread");
+      thread.setDaemon(true);
+      return thread;
+    });
+    timeoutService.setRemoveOnCancelPolicy(true);
+    connector = new Connector(configuration, this::handleReceive, this::handleFailure);
+    connector.getMetrics().gauge("requests.pending", requests::size);
+    registerMBeans();
   }
 
   /**
-   * Create and return a new instance of {@link Darbaan} class.
+   * Register the management beans of this instance in the platform MBean server, failing to
+   * register them doesn't prevent darbaan from working
+   */
+  private void registerMBeans() {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    String suffix = ",ip=" + ObjectName.quote(String.valueOf(configuration.getIp())) + ",port="
+        + configuration.getPort();
+    try {
+      ObjectName darbaanName = new ObjectName(Constants.MBEAN_DOMAIN + ":type=Darbaan" + suffix);
+      server.registerMBean(new DarbaanManagement(requests, executorService, connector),
+          darbaanName);
+      mbeans.add(darbaanName);
+      ObjectName poolName = new ObjectName(Constants.MBEAN_DOMAIN + ":type=ServicePool" + suffix);
+      server.registerMBean(
+          new DarbaanManagement.ServicePoolManagement(connector.getServicePool()), poolName);
+      mbeans.add(poolName);
+    } catch (JMException e) {
+      log.warn("failed to register management beans", e);
+    }
+  }
+
+  /**
+   * Create and return a new instance of {@link Darbaan} class. The instance starts in the
+   * background, use {@link #ready()} to know when it's ready.
    *
    * @param configuration configuration to use by the instance
    * @return newly created instance
-   * @throws IOException if can't open network sockets
    */
-  public static Darbaan newInstance(DarbaanConfiguration configuration) throws IOException {
-    Darbaan.configuration = configuration;
-    return new Darbaan();
+  public static Darbaan newInstance(DarbaanConfiguration configuration) {
+    return new Darbaan(configuration);
+  }
+
+  /**
+   * Create a new instance of {@link Darbaan} and return it when it's ready, see {@link #ready()}.
+   * If it couldn't get ready, the instance is destroyed before the future fails
+   *
+   * @param configuration configuration to use by the instance
+   * @return future of the ready instance
+   */
+  public static CompletableFuture<Darbaan> start(DarbaanConfiguration configuration) {
+    Darbaan darbaan = newInstance(configuration);
+    CompletableFuture<Darbaan> f = new CompletableFuture<>();
+    darbaan.ready().whenCompleteAsync((ready, t) -> {
+      if (Objects.isNull(t)) {
+        f.complete(ready);
+        return;
+      }
+      darbaan.destroy();
+      f.completeExceptionally(t instanceof CompletionException && Objects.nonNull(t.getCause())
+          ? t.getCause() : t);
+    });
+    return f;
+  }
+
+  /**
+   * Get a future which completes when this instance is ready. Binding the socket, discovering the
+   * nodes and loading the permissions from dastoor start concurrently; darbaan is ready when its
+   * socket is bound, the services required by
+   * {@link DarbaanConfiguration.Builder#requireService(ServiceSelector)} are available and, if
+   * {@link DarbaanConfiguration.Builder#setRequirePermissions(boolean)} is set, the permissions
+   * are loaded. The future fails if the socket couldn't be bound or discovery couldn't start.
+   *
+   * @return future of this instance when it's ready
+   */
+  public CompletableFuture<Darbaan> ready() {
+    return connector.ready().thenApply(v -> this);
   }
 
   /**
@@ -76,24 +170,119 @@ public final class Darbaan {
       e.printStackTrace();
     }
     executorService.shutdown();
+    timeoutService.shutdownNow();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    for (ObjectName name : mbeans) {
+      try {
+        server.unregisterMBean(name);
+      } catch (JMException e) {
+        log.warn("failed to unregister {}", name, e);
+      }
+    }
     connector.destroy();
     log.info("Darbaan shutdown gracefully");
   }
 
   /**
    * Send a request and return response in async fashion.
+   * <p>
+   * If the request has a deadline the future fails by {@link DeadlineExceededException} when it
+   * passes, otherwise it fails by
+   * {@link com.piranframework.darbaan.exception.RequestTimeoutException} if the request timeout
+   * of the configuration is set and passes. Cancelling the future, or its deadline passing,
+   * cancels the request on the server.
    *
    * @param request request to be send
    * @return response a completableFuture of the actual response
    */
   public CompletableFuture<Response> process(Request request) {
-    request.setRequestId(id(Constants.ID_REQ_PREFIX));
-    CompletableFuture<Response> f = new CompletableFuture<>();
-    requests.put(request.getRequestId(), f);
+    String requestId = id(Constants.ID_REQ_PREFIX);
+    request.setRequestId(requestId);
+    request.setBreakdown(new LatencyBreakdown());
+    sample(request);
+    CompletableFuture<Response> f;
+    if (request.hasDeadline())
+      f = register(requestId, request.getRemaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS,
+          DeadlineExceededException::new);
+    else {
+      f = new CompletableFuture<>();
+      requests.put(requestId, f);
+    }
+    f.whenComplete((r, t) -> {
+      if (t instanceof CancellationException || t instanceof DeadlineExceededException) {
+        requests.remove(requestId);
+        connector.cancel(requestId);
+      }
+    });
+    LifecycleListener lifecycle = connector.getLifecycle();
+    if (Objects.nonNull(lifecycle)) {
+      long start = System.nanoTime();
+      f.whenComplete((r, t) -> lifecycle.requestCompleted(request,
+          Objects.isNull(t) ? r.getStatus() : -1, System.nanoTime() - start));
+    }
     executorService.submit(() -> handleRequest(request));
     return f;
   }
 
+  /**
+   * Send a request and return its response as a stream. The server sends the response in chunks
+   * and the stream reads them as they arrive, holding at most
+   * {@link DarbaanConfiguration#getStreamWindow()} chunks in memory.
+   *
+   * @param request request to be send
+   * @return response stream
+   */
+  public ResponseStream processStream(Request request) {
+    request.setRequestId(id(Constants.ID_REQ_PREFIX));
+    request.setBreakdown(null);
+    sample(request);
+    ResponseStream stream = new ResponseStream(request.getRequestId(),
+        configuration.getStreamWindow());
+    if (request.hasDeadline())
+      stream.setDeadline(request.deadline());
+    executorService.submit(() -> handleStreamRequest(request, stream));
+    return stream;
+  }
+
+  /**
+   * Send a request to every server of its service and return all the responses arrived in time.
+   *
+   * @param request request to be send
+   * @param timeout time to wait for the response of each server
+   * @param unit    unit of the timeout
+   * @return a completableFuture of the responses
+   * @see #scatter(Request, Function, long, TimeUnit)
+   */
+  public CompletableFuture<List<Response>> broadcast(Request request, long timeout,
+                                                     TimeUnit unit) {
+    return scatter(request, Function.identity(), timeout, unit);
+  }
+
+  /**
+   * Send a request to every server of its service and merge the responses. The payload encoded
+   * once and shared between the messages, each server gets its own request id.
+   * <p>
+   * The result is partial: a server which fails, doesn't respond within the timeout or which its
+   * copy of the request is rejected by a full queue is left out of the responses given to the
+   * merger, the future fails only if the request can't be sent to any server. Requests with a
+   * payload stream can't be scattered.
+   *
+   * @param request request to be send
+   * @param merger  function to merge the responses of the servers
+   * @param timeout time to wait for the response of each server
+   * @param unit    unit of the timeout
+   * @return a completableFuture of the merged response
+   */
+  public <T> CompletableFuture<T> scatter(Request request, Function<List<Response>, T> merger,
+                                          long timeout, TimeUnit unit) {
+    request.setRequestId(id(Constants.ID_REQ_PREFIX));
+    request.setBreakdown(null);
+    sample(request);
+    CompletableFuture<T> f = new CompletableFuture<>();
+    executorService.submit(() -> handleScatter(request, merger, timeout, unit, f));
+    return f;
+  }
+
   /**
    * Check if a service available
    *
@@ -105,17 +294,256 @@ public final class Darbaan {
     return connector.isServiceAvailable(name, version);
   }
 
+  /**
+   * Add or replace a traffic split rule, it takes effect on the next requests
+   *
+   * @param split traffic split rule
+   */
+  public void setTrafficSplit(TrafficSplit split) {
+    connector.setTrafficSplit(split);
+  }
+
+  /**
+   * Remove the traffic split rule of a service version
+   *
+   * @param name        service name
+   * @param fromVersion version which its traffic is split
+   */
+  public void removeTrafficSplit(String name, String fromVersion) {
+    connector.removeTrafficSplit(name, fromVersion);
+  }
+
+  /**
+   * Get the active traffic split rules
+   *
+   * @return traffic split rules
+   */
+  public Collection<TrafficSplit> getTrafficSplits() {
+    return connector.getTrafficSplits();
+  }
+
+  /**
+   * Get the metrics of this instance: request counters, latency histograms of the services and
+   * actions and gauges of the queues
+   *
+   * @return metrics registry
+   */
+  public MetricsRegistry getMetrics() {
+    return connector.getMetrics();
+  }
+
+  /**
+   * Set or change a rate limit. Requests exceeding the limit fail by
+   * {@link com.piranframework.darbaan.exception.RateLimitExceededException}
+   *
+   * @param scope scope of the limit
+   * @param key   role, service id or action address depending on the scope
+   * @param rate  permitted requests per second
+   * @param burst number of requests permitted at once after an idle period
+   */
+  public void setRateLimit(RateLimitScope scope, String key, double rate, int burst) {
+    connector.getRateLimiter().setLimit(scope, key, rate, burst);
+  }
+
+  /**
+   * Remove a rate limit
+   *
+   * @param scope scope of the limit
+   * @param key   role, service id or action address depending on the scope
+   */
+  public void removeRateLimit(RateLimitScope scope, String key) {
+    connector.getRateLimiter().removeLimit(scope, key);
+  }
+
+  /**
+   * Get the rate limits in effect
+   *
+   * @return token buckets of each scope by their key
+   */
+  public Map<RateLimitScope, Map<String, TokenBucket>> getRateLimits() {
+    return connector.getRateLimiter().getLimits();
+  }
+
+  /**
+   * Add or replace a mirror rule, copies of the requests of the service version are sent to its
+   * shadow version from now on
+   *
+   * @param mirror mirror rule
+   */
+  public void setMirror(Mirror mirror) {
+    connector.setMirror(mirror);
+  }
+
+  /**
+   * Stop mirroring the requests of a service version
+   *
+   * @param name    service name
+   * @param version version which its requests are mirrored
+   */
+  public void removeMirror(String name, String version) {
+    connector.removeMirror(name, version);
+  }
+
+  /**
+   * Get the active mirror rules
+   *
+   * @return mirror rules
+   */
+  public Collection<Mirror> getMirrors() {
+    return connector.getMirrors();
+  }
+
+  /**
+   * Get the response stats of all the service versions requests sent to
+   *
+   * @return stats of the service versions
+   */
+  public Collection<ServiceStats> getServiceStats() {
+    return connector.getStats().values();
+  }
+
+  /**
+   * Get the response stats of a service version
+   *
+   * @param name    service name
+   * @param version service version
+   * @return stats of the service version, null if no request sent to it yet
+   */
+  public ServiceStats getServiceStats(String name, String version) {
+    return connector.getStats().get(serviceId(name, version));
+  }
+
+  /**
+   * Start a sampled trace for the request if it has no trace context, by the configured sample rate
+   *
+   * @param request request to sample
+   */
+  private void sample(Request request) {
+    double rate = configuration.getTraceSampleRate();
+    if (rate > 0 && Objects.isNull(request.getTraceContext())
+        && ThreadLocalRandom.current().nextDouble() < rate)
+      request.setTraceContext(TraceContext.newTrace(true));
+  }
+
   private void handleRequest(Request request) {
+    if (!requests.containsKey(request.getRequestId()))
+      return; // cancelled before sending
+    request.breakdown().dispatched();
     try {
       connector.send(request);
     } catch (Exception e) {
-      requests.remove(request.getRequestId()).completeExceptionally(e);
+      handleFailure(request.getRequestId(), e);
+    }
+  }
+
+  private <T> void handleScatter(Request request, Function<List<Response>, T> merger,
+                                 long timeout, TimeUnit unit, CompletableFuture<T> f) {
+    try {
+      if (Objects.nonNull(request.getPayloadStream()))
+        throw new IllegalArgumentException("request with payload stream can't be scattered");
+      Service service = connector.routeAll(request);
+      List<Server> servers = service.servers();
+      List<CompletableFuture<Response>> parts = new ArrayList<>(servers.size());
+      QueueFullException rejected = null;
+      int sent = 0;
+      for (Server server : servers) {
+        String requestId = id(Constants.ID_REQ_PREFIX);
+        parts.add(register(requestId, timeout, unit));
+        try {
+          connector.send(request, requestId, service, server);
+          sent++;
+        } catch (QueueFullException e) {
+          handleFailure(requestId, e);
+          rejected = e;
+        }
+      }
+      if (sent == 0 && Objects.nonNull(rejected)) {
+        f.completeExceptionally(rejected);
+        return;
+      }
+      CompletableFuture.allOf(parts.stream()
+          .map(p -> p.handle((r, t) -> r))
+          .toArray(CompletableFuture[]::new))
+          .thenApply(v -> parts.stream()
+              .filter(p -> !p.isCompletedExceptionally())
+              .map(CompletableFuture::join)
+              .collect(Collectors.toList()))
+          .thenApply(merger)
+          .whenComplete((r, t) -> {
+            if (Objects.nonNull(t))
+              f.completeExceptionally(t);
+            else
+              f.complete(r);
+          });
+    } catch (Exception e) {
+      f.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Register a future for the request id which fails by {@link TimeoutException} if the response
+   * doesn't arrive in time
+   *
+   * @param requestId request id
+   * @param timeout   time to wait for the response
+   * @param unit      unit of the timeout
+   * @return future of the response
+   */
+  private CompletableFuture<Response> register(String requestId, long timeout, TimeUnit unit) {
+    return register(requestId, timeout, unit,
+        id -> new TimeoutException("no response for " + id));
+  }
+
+  /**
+   * Register a future for the request id which fails by the given failure if the response doesn't
+   * arrive in time
+   *
+   * @param requestId request id
+   * @param timeout   time to wait for the response
+   * @param unit      unit of the timeout
+   * @param failure   function creating the failure from the request id
+   * @return future of the response
+   */
+  private CompletableFuture<Response> register(String requestId, long timeout, TimeUnit unit,
+                                               Function<String, Exception> failure) {
+    CompletableFuture<Response> f = new CompletableFuture<>();
+    requests.put(requestId, f);
+    ScheduledFuture<?> expiration = timeoutService.schedule(() -> {
+      CompletableFuture<Response> expired = requests.remove(requestId);
+      if (Objects.nonNull(expired))
+        expired.completeExceptionally(failure.apply(requestId));
+    }, timeout, unit);
+    f.whenComplete((r, t) -> expiration.cancel(false));
+    return f;
+  }
+
+  private void handleStreamRequest(Request request, ResponseStream stream) {
+    try {
+      connector.send(request, stream);
+    } catch (Exception e) {
+      stream.fail(e);
     }
   }
 
+  private void handleFailure(String requestId, Throwable cause) {
+    CompletableFuture<Response> f = requests.remove(requestId);
+    if (Objects.nonNull(f))
+      f.completeExceptionally(cause);
+  }
+
   private void handleReceive(Response response) {
     try {
-      requests.remove(response.getRequestId()).complete(response);
+      CompletableFuture<Response> f = requests.remove(response.getRequestId());
+      if (Objects.isNull(f)) {
+        log.debug("response of expired request {} discarded", response.getRequestId());
+        return;
+      }
+      f.complete(response);
+      LatencyBreakdown breakdown = response.getLatencyBreakdown();
+      if (Objects.nonNull(breakdown)) {
+        breakdown.completed();
+        breakdown.recordTo(connector.getMetrics());
+      }
     } catch (Exception e) {
       log.error("Unhandled error occurred: ", e);
     }
@@ -19,9 +19,25 @@
 
 package com.piranframework.darbaan;
 
+import com.piranframework.darbaan.codec.PayloadCodec;
+import com.piranframework.darbaan.codec.PayloadCodecs;
+import com.piranframework.darbaan.discovery.GeevDiscovery;
+import com.piranframework.darbaan.spi.Discovery;
+import com.piranframework.darbaan.util.Constants;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.piranframework.darbaan.util.IdentityUtil.serviceId;
+
 /**
  * Darbaan Configuration class. Instances of this class hold configurations of the darbaan and
- * should be send to {@link Darbaan} static constructor.
+ * should be send to {@link Darbaan} static constructor. Each darbaan instance keeps its own
+ * configuration.
  *
  * @author Isa Hekmatizadeh
  */
@@ -29,14 +45,45 @@ public class DarbaanConfiguration {
 
   private final String ip;
   private final int port;
+  private final String bindAddress;
+  private final int ioThreads;
+  private final int shards;
   private final int sendThreadPoolSize;
   private final int receiveThreadPoolSize;
+  private final int streamWindow;
+  private final int uploadChunkSize;
+  private final int uploadMemoryLimit;
+  private final int laneCapacity;
+  private final boolean strictPriority;
+  private final double traceSampleRate;
+  private final long requestTimeout;
+  private final Discovery discovery;
+  private final List<ServiceSelector> requiredServices;
+  private final boolean requirePermissions;
+  private final Map<String, PayloadCodec> codecs;
+  private final Map<String, PayloadCodec> serviceCodecs;
 
   DarbaanConfiguration(Builder builder) {
     this.ip = builder.ip;
     this.port = builder.port;
+    this.bindAddress = builder.bindAddress;
+    this.ioThreads = builder.ioThreads;
+    this.shards = builder.shards;
     this.sendThreadPoolSize = builder.sendThreadPoolSize;
     this.receiveThreadPoolSize = builder.receiveThreadPoolSize;
+    this.streamWindow = builder.streamWindow;
+    this.uploadChunkSize = builder.uploadChunkSize;
+    this.uploadMemoryLimit = builder.uploadMemoryLimit;
+    this.laneCapacity = builder.laneCapacity;
+    this.strictPriority = builder.strictPriority;
+    this.traceSampleRate = builder.traceSampleRate;
+    this.requestTimeout = builder.requestTimeout;
+    this.discovery = Objects.isNull(builder.discovery) ? new GeevDiscovery() : builder.discovery;
+    this.requiredServices =
+        Collections.unmodifiableList(new ArrayList<>(builder.requiredServices));
+    this.requirePermissions = builder.requirePermissions;
+    this.codecs = Collections.unmodifiableMap(new HashMap<>(builder.codecs));
+    this.serviceCodecs = Collections.unmodifiableMap(new HashMap<>(builder.serviceCodecs));
   }
 
   public String getIp() {
@@ -47,6 +94,18 @@ public class DarbaanConfiguration {
     return port;
   }
 
+  public String getBindAddress() {
+    return bindAddress;
+  }
+
+  public int getIoThreads() {
+    return ioThreads;
+  }
+
+  public int getShards() {
+    return shards;
+  }
+
   public int getSendThreadPoolSize() {
     return sendThreadPoolSize;
   }
@@ -55,6 +114,69 @@ public class DarbaanConfiguration {
     return receiveThreadPoolSize;
   }
 
+  public int getStreamWindow() {
+    return streamWindow;
+  }
+
+  public int getUploadChunkSize() {
+    return uploadChunkSize;
+  }
+
+  public int getUploadMemoryLimit() {
+    return uploadMemoryLimit;
+  }
+
+  public int getLaneCapacity() {
+    return laneCapacity;
+  }
+
+  public boolean isStrictPriority() {
+    return strictPriority;
+  }
+
+  public double getTraceSampleRate() {
+    return traceSampleRate;
+  }
+
+  public long getRequestTimeout() {
+    return requestTimeout;
+  }
+
+  public Discovery getDiscovery() {
+    return discovery;
+  }
+
+  public List<ServiceSelector> getRequiredServices() {
+    return requiredServices;
+  }
+
+  public boolean isRequirePermissions() {
+    return requirePermissions;
+  }
+
+  /**
+   * Find a codec by its id, among the built-in and the registered codecs
+   *
+   * @param id codec id
+   * @return the codec or null if no codec registered with this id
+   */
+  public PayloadCodec getCodec(String id) {
+    return codecs.get(id);
+  }
+
+  /**
+   * Find the codec of a service
+   *
+   * @param name    service name
+   * @param version service version
+   * @return codec bound to the service, JSON if service is not bound to any codec
+   */
+  public PayloadCodec getServiceCodec(String name, String version) {
+    if (serviceCodecs.isEmpty() || Objects.isNull(name) || Objects.isNull(version))
+      return PayloadCodecs.JSON;
+    return serviceCodecs.getOrDefault(serviceId(name, version), PayloadCodecs.JSON);
+  }
+
   /**
    * Builder class for {@link DarbaanConfiguration}
    */
@@ -62,8 +184,23 @@ public class DarbaanConfiguration {
 
     private String ip;
     private int port;
+    private String bindAddress = "*";
+    private int ioThreads = 1;
+    private int shards = 1;
     private int sendThreadPoolSize = 4;
     private int receiveThreadPoolSize = 4;
+    private int streamWindow = 16;
+    private int uploadChunkSize = 64 * 1024;
+    private int uploadMemoryLimit = 1024 * 1024;
+    private int laneCapacity = 10000;
+    private boolean strictPriority = false;
+    private double traceSampleRate = 0;
+    private long requestTimeout = Constants.REQUEST_TIMEOUT;
+    private Discovery discovery;
+    private final List<ServiceSelector> requiredServices = new ArrayList<>();
+    private boolean requirePermissions = false;
+    private final Map<String, PayloadCodec> codecs = new HashMap<>(PayloadCodecs.builtIn());
+    private final Map<String, PayloadCodec> serviceCodecs = new HashMap<>();
 
     /**
      * Set the ip of the current node to use for communication to other nodes
@@ -87,6 +224,45 @@ public class DarbaanConfiguration {
       return this;
     }
 
+    /**
+     * Set the address of the interface to bind the socket to, all interfaces by default. Set it to
+     * run an instance for each network interface on the same port
+     *
+     * @param bindAddress ip address of the interface or * for all
+     * @return current instance
+     */
+    public Builder setBindAddress(String bindAddress) {
+      this.bindAddress = bindAddress;
+      return this;
+    }
+
+    /**
+     * Set the number of zeroMQ I/O threads of this instance, one thread is usually enough for
+     * a gigabit of traffic
+     *
+     * @param ioThreads number of I/O threads
+     * @return current instance
+     */
+    public Builder setIoThreads(int ioThreads) {
+      this.ioThreads = ioThreads;
+      return this;
+    }
+
+    /**
+     * Set the number of connector shards. Each shard has its own socket thread and binds to the
+     * port plus its index, so shards spread the sending and receiving over several cores. Only
+     * the base port is announced by the discovery, servers should be spread over the ports of the
+     * shards by their own configuration
+     *
+     * @param shards number of shards, ports port to port + shards - 1 are used
+     * @return current instance
+     * @throws IllegalArgumentException if the value is not positive
+     */
+    public Builder setShards(int shards) {
+      this.shards = positive("shards", shards);
+      return this;
+    }
+
     /**
      * Set the number of threads to assign to outgoing messages
      *
@@ -109,13 +285,188 @@ public class DarbaanConfiguration {
       return this;
     }
 
+    /**
+     * Set the number of chunks a server may send ahead on a streaming response, it bounds the
+     * memory held by each stream
+     *
+     * @param streamWindow stream window in chunks
+     * @return current instance
+     * @throws IllegalArgumentException if the value is not positive
+     */
+    public Builder setStreamWindow(int streamWindow) {
+      this.streamWindow = positive("streamWindow", streamWindow);
+      return this;
+    }
+
+    /**
+     * Set the maximum size of each chunk of a streaming upload
+     *
+     * @param uploadChunkSize chunk size in bytes
+     * @return current instance
+     * @throws IllegalArgumentException if the value is not positive
+     */
+    public Builder setUploadChunkSize(int uploadChunkSize) {
+      this.uploadChunkSize = positive("uploadChunkSize", uploadChunkSize);
+      return this;
+    }
+
+    /**
+     * Set the maximum bytes of a streaming upload held in memory waiting to be written on the
+     * socket. Reading the payload stream is paused when the limit reached
+     *
+     * @param uploadMemoryLimit memory limit of each upload in bytes
+     * @return current instance
+     * @throws IllegalArgumentException if the value is not positive
+     */
+    public Builder setUploadMemoryLimit(int uploadMemoryLimit) {
+      this.uploadMemoryLimit = positive("uploadMemoryLimit", uploadMemoryLimit);
+      return this;
+    }
+
+    /**
+     * Set the maximum number of requests waiting to be sent in the lane of each priority, requests
+     * beyond it are rejected
+     *
+     * @param laneCapacity capacity of each lane
+     * @return current instance
+     * @throws IllegalArgumentException if the value is not positive
+     */
+    public Builder setLaneCapacity(int laneCapacity) {
+      this.laneCapacity = positive("laneCapacity", laneCapacity);
+      return this;
+    }
+
+    /**
+     * Set whether a lane is served only when all the higher priority lanes are empty. By default
+     * lanes are served in proportion to the weight of their priority
+     *
+     * @param strictPriority true to drain the lanes in strict priority order
+     * @return current instance
+     */
+    public Builder setStrictPriority(boolean strictPriority) {
+      this.strictPriority = strictPriority;
+      return this;
+    }
+
+    /**
+     * Set the ratio of the requests without trace context which darbaan starts a sampled trace
+     * for. Requests with a trace context always propagate it. Default is 0, darbaan never starts a
+     * trace itself
+     *
+     * @param traceSampleRate sample rate between 0 and 1
+     * @return current instance
+     * @throws IllegalArgumentException if the rate is not between 0 and 1
+     */
+    public Builder setTraceSampleRate(double traceSampleRate) {
+      if (!(traceSampleRate >= 0 && traceSampleRate <= 1))
+        throw new IllegalArgumentException(
+            "traceSampleRate must be between 0 and 1: " + traceSampleRate);
+      this.traceSampleRate = traceSampleRate;
+      return this;
+    }
+
+    /**
+     * Set the time to wait for the response of a request without deadline, in milliseconds. The
+     * request is cancelled and fails by
+     * {@link com.piranframework.darbaan.exception.RequestTimeoutException} when it passes, so a
+     * lost reply never holds the request forever. Streaming responses without deadline are not
+     * limited, they fail when their server leaves. Default is 0, requests without deadline wait
+     * for their response as long as their server is alive
+     *
+     * @param requestTimeout request timeout in milliseconds, 0 for no timeout
+     * @return current instance
+     * @throws IllegalArgumentException if the timeout is negative
+     */
+    public Builder setRequestTimeout(long requestTimeout) {
+      if (requestTimeout < 0)
+        throw new IllegalArgumentException("requestTimeout must not be negative: "
+            + requestTimeout);
+      this.requestTimeout = requestTimeout;
+      return this;
+    }
+
+    /**
+     * Set how darbaan finds the servers and admin nodes. Default is Geev discovery, a
+     * {@link com.piranframework.darbaan.discovery.StaticDiscovery} or
+     * {@link com.piranframework.darbaan.discovery.FileDiscovery} connects to a known topology
+     * without waiting for discovery
+     *
+     * @param discovery discovery to use
+     * @return current instance
+     */
+    public Builder setDiscovery(Discovery discovery) {
+      this.discovery = discovery;
+      return this;
+    }
+
+    /**
+     * Add a service which must be available before darbaan reports it's ready, see
+     * {@link Darbaan#ready()}
+     *
+     * @param selector versions of the service which satisfy the requirement
+     * @return current instance
+     */
+    public Builder requireService(ServiceSelector selector) {
+      this.requiredServices.add(selector);
+      return this;
+    }
+
+    /**
+     * Set whether the permissions must be loaded from dastoor before darbaan reports it's ready,
+     * see {@link Darbaan#ready()}
+     *
+     * @param requirePermissions true to wait for the permissions
+     * @return current instance
+     */
+    public Builder setRequirePermissions(boolean requirePermissions) {
+      this.requirePermissions = requirePermissions;
+      return this;
+    }
+
+    /**
+     * Register a codec, so received messages with its id could be decoded. The built-in codecs of
+     * {@link PayloadCodecs} are registered by default
+     *
+     * @param codec codec to register
+     * @return current instance
+     */
+    public Builder registerCodec(PayloadCodec codec) {
+      this.codecs.put(codec.id(), codec);
+      return this;
+    }
+
+    /**
+     * Bind a service to a codec, the codec is registered too. Requests of the service which have
+     * not an explicit codec are encoded by it
+     *
+     * @param name    service name
+     * @param version service version
+     * @param codec   codec the service payloads encoded by
+     * @return current instance
+     */
+    public Builder setServiceCodec(String name, String version, PayloadCodec codec) {
+      registerCodec(codec);
+      this.serviceCodecs.put(serviceId(name, version), codec);
+      return this;
+    }
+
     /**
      * Build a new instance of {@link DarbaanConfiguration} and return it
      *
      * @return new instance of {@link DarbaanConfiguration}
+     * @throws IllegalArgumentException if the ports of the shards exceed the port range
      */
     public DarbaanConfiguration build() {
+      if (port + shards - 1 > 65535)
+        throw new IllegalArgumentException(
+            String.format("ports of %d shards from port %d exceed 65535", shards, port));
       return new DarbaanConfiguration(this);
     }
+
+    private static int positive(String name, int value) {
+      if (value < 1)
+        throw new IllegalArgumentException(name + " must be positive: " + value);
+      return value;
+    }
   }
 }
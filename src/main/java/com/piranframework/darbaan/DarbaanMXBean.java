@@ -0,0 +1,119 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan;
+
+import java.util.Map;
+
+/**
+ * Management interface of a darbaan instance, registered in the platform MBean server as
+ * {@code com.piranframework.darbaan:type=Darbaan,ip=<ip>,port=<port>}. It exposes the state of the queues
+ * and thread pools and the knobs which are safe to change at runtime.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public interface DarbaanMXBean {
+
+  /**
+   * @return number of requests waiting for their response future to complete
+   */
+  int getPendingRequests();
+
+  /**
+   * @return number of requests sent to a server and waiting for its response
+   */
+  int getInflightRequests();
+
+  /**
+   * @return number of messages waiting in the outbound lane of each priority
+   */
+  Map<String, Integer> getOutboundQueueDepths();
+
+  /**
+   * @return number of action addresses which their permissions are known
+   */
+  int getPermissionCount();
+
+  /**
+   * @return request counters by name
+   */
+  Map<String, Long> getCounters();
+
+  int getSendThreadPoolSize();
+
+  void setSendThreadPoolSize(int size);
+
+  int getSendThreadPoolActiveCount();
+
+  int getSendThreadPoolQueueSize();
+
+  int getReceiveThreadPoolSize();
+
+  void setReceiveThreadPoolSize(int size);
+
+  int getReceiveThreadPoolActiveCount();
+
+  int getReceiveThreadPoolQueueSize();
+
+  /**
+   * @return maximum messages queued in the router socket for each connected server
+   */
+  int getSendHighWaterMark();
+
+  /**
+   * Change the send high water mark. ZeroMQ applies it only to the pipes created afterwards, so
+   * the servers already connected keep their old limit until they reconnect
+   *
+   * @param hwm maximum messages queued for each server connecting from now on
+   */
+  void setSendHighWaterMark(int hwm);
+
+  /**
+   * @return maximum messages received from each connected server and not yet read
+   */
+  int getReceiveHighWaterMark();
+
+  /**
+   * Change the receive high water mark. ZeroMQ applies it only to the pipes created afterwards, so
+   * the servers already connected keep their old limit until they reconnect
+   *
+   * @param hwm maximum unread messages of each server connecting from now on
+   */
+  void setReceiveHighWaterMark(int hwm);
+
+  /**
+   * @return maximum messages the socket thread sends before checking for received messages
+   */
+  int getBatchSize();
+
+  void setBatchSize(int batchSize);
+
+  /**
+   * @return milliseconds of silence after which a server is pinged
+   */
+  long getPingInterval();
+
+  void setPingInterval(long pingInterval);
+
+  /**
+   * @return maximum requests waiting in each outbound lane
+   */
+  int getLaneCapacity();
+
+  void setLaneCapacity(int capacity);
+}
@@ -0,0 +1,206 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of {@link DarbaanMXBean} and {@link ServicePoolMXBean} over the internals of a
+ * darbaan instance
+ *
+ * @author Isa Hekmatizadeh
+ */
+class DarbaanManagement implements DarbaanMXBean {
+
+  private final Map<String, ?> requests;
+  private final ThreadPoolExecutor sendPool;
+  private final Connector connector;
+
+  DarbaanManagement(Map<String, ?> requests, ThreadPoolExecutor sendPool, Connector connector) {
+    this.requests = requests;
+    this.sendPool = sendPool;
+    this.connector = connector;
+  }
+
+  @Override
+  public int getPendingRequests() {
+    return requests.size();
+  }
+
+  @Override
+  public int getInflightRequests() {
+    return connector.getInflightCount();
+  }
+
+  @Override
+  public Map<String, Integer> getOutboundQueueDepths() {
+    Map<String, Integer> depths = new LinkedHashMap<>();
+    for (Priority priority : Priority.values())
+      depths.put(priority.name(), connector.getQueueSize(priority));
+    return depths;
+  }
+
+  @Override
+  public int getPermissionCount() {
+    return connector.getPermissionCache().size();
+  }
+
+  @Override
+  public Map<String, Long> getCounters() {
+    Map<String, Long> counters = new LinkedHashMap<>();
+    connector.getMetrics().getCounters().forEach((c, v) -> counters.put(c.name(), v));
+    return counters;
+  }
+
+  @Override
+  public int getSendThreadPoolSize() {
+    return sendPool.getCorePoolSize();
+  }
+
+  @Override
+  public void setSendThreadPoolSize(int size) {
+    resize(sendPool, size);
+  }
+
+  @Override
+  public int getSendThreadPoolActiveCount() {
+    return sendPool.getActiveCount();
+  }
+
+  @Override
+  public int getSendThreadPoolQueueSize() {
+    return sendPool.getQueue().size();
+  }
+
+  @Override
+  public int getReceiveThreadPoolSize() {
+    return connector.getExecutorService().getCorePoolSize();
+  }
+
+  @Override
+  public void setReceiveThreadPoolSize(int size) {
+    resize(connector.getExecutorService(), size);
+  }
+
+  @Override
+  public int getReceiveThreadPoolActiveCount() {
+    return connector.getExecutorService().getActiveCount();
+  }
+
+  @Override
+  public int getReceiveThreadPoolQueueSize() {
+    return connector.getExecutorService().getQueue().size();
+  }
+
+  @Override
+  public int getSendHighWaterMark() {
+    return connector.getSendHighWaterMark();
+  }
+
+  @Override
+  public void setSendHighWaterMark(int hwm) {
+    connector.setHighWaterMarks(hwm, connector.getReceiveHighWaterMark());
+  }
+
+  @Override
+  public int getReceiveHighWaterMark() {
+    return connector.getReceiveHighWaterMark();
+  }
+
+  @Override
+  public void setReceiveHighWaterMark(int hwm) {
+    connector.setHighWaterMarks(connector.getSendHighWaterMark(), hwm);
+  }
+
+  @Override
+  public int getBatchSize() {
+    return connector.getBatchSize();
+  }
+
+  @Override
+  public void setBatchSize(int batchSize) {
+    connector.setBatchSize(batchSize);
+  }
+
+  @Override
+  public long getPingInterval() {
+    return connector.getPingInterval();
+  }
+
+  @Override
+  public void setPingInterval(long pingInterval) {
+    if (pingInterval <= 0)
+      throw new IllegalArgumentException("ping interval must be positive");
+    connector.setPingInterval(pingInterval);
+  }
+
+  @Override
+  public int getLaneCapacity() {
+    return connector.getLaneCapacity();
+  }
+
+  @Override
+  public void setLaneCapacity(int capacity) {
+    if (capacity <= 0)
+      throw new IllegalArgumentException("lane capacity must be positive");
+    connector.setLaneCapacity(capacity);
+  }
+
+  /**
+   * Change the number of threads of a fixed size pool, the order of setting core and maximum
+   * sizes matters since core size can't exceed the maximum
+   */
+  private static void resize(ThreadPoolExecutor pool, int size) {
+    if (size <= 0)
+      throw new IllegalArgumentException("thread pool size must be positive");
+    if (size > pool.getMaximumPoolSize()) {
+      pool.setMaximumPoolSize(size);
+      pool.setCorePoolSize(size);
+    } else {
+      pool.setCorePoolSize(size);
+      pool.setMaximumPoolSize(size);
+    }
+  }
+
+  /**
+   * Implementation of {@link ServicePoolMXBean}
+   */
+  static class ServicePoolManagement implements ServicePoolMXBean {
+
+    private final ServicePool servicePool;
+
+    ServicePoolManagement(ServicePool servicePool) {
+      this.servicePool = servicePool;
+    }
+
+    @Override
+    public List<ServerInfo> getServers() {
+      return servicePool.servers().stream().map(ServerInfo::of).collect(Collectors.toList());
+    }
+
+    @Override
+    public Map<String, Integer> getServices() {
+      return servicePool.serverCounts();
+    }
+  }
+}
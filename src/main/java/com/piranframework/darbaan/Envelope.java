@@ -0,0 +1,145 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.piranframework.darbaan;
+
+import com.piranframework.darbaan.model.Server;
+import com.piranframework.darbaan.model.Service;
+import com.piranframework.darbaan.util.Constants;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMsg;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A message waiting in the outbox queue of the {@link Connector} along with the callback to run
+ * after the socket thread wrote it, whether it's sent or failed.
+ * <p>
+ * A request message may have a deadline, the time remaining to the deadline is appended as the
+ * DEADLINE header right before sending, so the time spent in the queue is taken into account.
+ *
+ * @author Isa Hekmatizadeh
+ */
+final class Envelope {
+
+  private final ZMsg msg;
+  private final Runnable onSent;
+  private final String requestId;
+  private final long deadline;
+  private final boolean hasDeadline;
+  private final long enqueuedAt;
+  private final LatencyBreakdown breakdown;
+  private final Service service;
+  private final Server server;
+
+  Envelope(ZMsg msg) {
+    this(msg, null);
+  }
+
+  Envelope(ZMsg msg, Runnable onSent) {
+    this.msg = msg;
+    this.onSent = onSent;
+    this.requestId = null;
+    this.deadline = 0;
+    this.hasDeadline = false;
+    this.enqueuedAt = 0;
+    this.breakdown = null;
+    this.service = null;
+    this.server = null;
+  }
+
+  /**
+   * Create an envelope of a request message, carrying the deadline of the request
+   *
+   * @param msg       request message
+   * @param requestId request id of the message
+   * @param request   request which its deadline applied
+   * @param breakdown latency breakdown to stamp when the message written, may be null
+   * @param service   service the request routed to
+   * @param server    server the request routed to
+   */
+  Envelope(ZMsg msg, String requestId, Request request, LatencyBreakdown breakdown,
+           Service service, Server server) {
+    this.msg = msg;
+    this.onSent = null;
+    this.requestId = requestId;
+    this.deadline = request.deadline();
+    this.hasDeadline = request.hasDeadline();
+    this.enqueuedAt = System.nanoTime();
+    this.breakdown = breakdown;
+    this.service = service;
+    this.server = server;
+  }
+
+  ZMsg msg() {
+    return msg;
+  }
+
+  String requestId() {
+    return requestId;
+  }
+
+  Service service() {
+    return service;
+  }
+
+  Server server() {
+    return server;
+  }
+
+  /**
+   * Get the time the message waited in the queue, only known for request messages
+   *
+   * @return nanoseconds since the envelope created
+   */
+  long queuedNanos() {
+    return System.nanoTime() - enqueuedAt;
+  }
+
+  /**
+   * Check if the deadline of the message passed
+   *
+   * @return true if the message should be dropped
+   */
+  boolean isExpired() {
+    return hasDeadline && deadline - System.nanoTime() <= 0;
+  }
+
+  /**
+   * Send the message on the socket and run the callback
+   *
+   * @param socket socket to send the message on
+   */
+  void send(ZMQ.Socket socket) {
+    try {
+      if (hasDeadline) {
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        msg.add(Constants.HDR_DEADLINE);
+        msg.add(String.valueOf(Math.max(1, remaining)));
+      }
+      msg.send(socket, false);
+      if (Objects.nonNull(breakdown))
+        breakdown.written();
+    } finally {
+      if (Objects.nonNull(onSent))
+        onSent.run();
+    }
+  }
+}
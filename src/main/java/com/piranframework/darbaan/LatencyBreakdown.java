@@ -0,0 +1,128 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan;
+
+import com.piranframework.darbaan.metrics.MetricsRegistry;
+import com.piranframework.darbaan.metrics.Stage;
+
+/**
+ * Time a request spent in each {@link Stage}, measured by {@link System#nanoTime()} at the
+ * boundaries of the stages. Each timestamp is written once by the thread doing that stage and
+ * read after the request handed over to the next thread, so no synchronization is needed. The
+ * completion is stamped after the future completed, so it's volatile and a dependent action
+ * of the future which reads the breakdown synchronously sees the request not completed yet.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public final class LatencyBreakdown {
+
+  private final long created = System.nanoTime();
+  private long dispatched;
+  private long enqueued;
+  private long written;
+  private long received;
+  private long handled;
+  private volatile long completed;
+
+  LatencyBreakdown() {
+  }
+
+  void dispatched() {
+    dispatched = System.nanoTime();
+  }
+
+  void enqueued() {
+    enqueued = System.nanoTime();
+  }
+
+  void written() {
+    written = System.nanoTime();
+  }
+
+  void received(long receivedAt) {
+    received = receivedAt;
+  }
+
+  void handled() {
+    handled = System.nanoTime();
+  }
+
+  void completed() {
+    completed = System.nanoTime();
+  }
+
+  /**
+   * Get the time spent in a stage
+   *
+   * @param stage stage of the request
+   * @return nanoseconds spent in the stage, -1 if the request didn't pass the stage
+   */
+  public long get(Stage stage) {
+    switch (stage) {
+      case SEND_EXECUTOR:
+        return between(created, dispatched);
+      case ROUTING:
+        return between(dispatched, enqueued);
+      case OUTBOUND_QUEUE:
+        return between(enqueued, written);
+      case SERVER:
+        return between(written, received);
+      case RECEIVE_EXECUTOR:
+        return between(received, handled);
+      case COMPLETION:
+        return between(handled, completed);
+      default:
+        throw new IllegalArgumentException("unknown stage " + stage);
+    }
+  }
+
+  /**
+   * Get the time from calling process until the future completed
+   *
+   * @return total nanoseconds, -1 if the future is not completed yet
+   */
+  public long getTotal() {
+    return between(created, completed);
+  }
+
+  /**
+   * Record the time of each stage in the stage histograms
+   *
+   * @param metrics metrics registry
+   */
+  void recordTo(MetricsRegistry metrics) {
+    for (Stage stage : Stage.values()) {
+      long nanos = get(stage);
+      if (nanos >= 0)
+        metrics.stageLatency(stage).record(nanos);
+    }
+  }
+
+  private static long between(long start, long end) {
+    return start == 0 || end == 0 ? -1 : end - start;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (Stage stage : Stage.values())
+      sb.append(stage).append('=').append(get(stage) / 1000).append("us ");
+    return sb.append("total=").append(getTotal() / 1000).append("us").toString();
+  }
+}
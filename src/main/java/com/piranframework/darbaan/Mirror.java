@@ -0,0 +1,86 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.piranframework.darbaan;
+
+import com.piranframework.darbaan.util.TokenBucket;
+
+import java.util.Objects;
+
+/**
+ * Rule to mirror the requests of a service version to a shadow version. A copy of each request
+ * is sent to the shadow version, its reply is discarded after its latency and status recorded in
+ * the {@link ServiceStats} of the shadow version. The primary request is never affected.
+ * <p>
+ * Mirroring is limited by a rate, copies beyond the rate are skipped rather than delayed.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public final class Mirror {
+
+  private final String serviceName;
+  private final String version;
+  private final String shadowVersion;
+  private final TokenBucket limit;
+
+  /**
+   * Create a mirror rule
+   *
+   * @param serviceName   service name
+   * @param version       version which its requests are mirrored
+   * @param shadowVersion version to send the copies to
+   * @param maxPerSecond  maximum copies to send per second
+   */
+  public Mirror(String serviceName, String version, String shadowVersion, double maxPerSecond) {
+    this.serviceName = Objects.requireNonNull(serviceName);
+    this.version = Objects.requireNonNull(version);
+    this.shadowVersion = Objects.requireNonNull(shadowVersion);
+    this.limit = new TokenBucket(maxPerSecond, 1);
+  }
+
+  public String getServiceName() {
+    return serviceName;
+  }
+
+  public String getVersion() {
+    return version;
+  }
+
+  public String getShadowVersion() {
+    return shadowVersion;
+  }
+
+  public double getMaxPerSecond() {
+    return limit.getRate();
+  }
+
+  /**
+   * Check if another copy could be sent within the rate limit
+   *
+   * @return true if a copy should be sent
+   */
+  boolean tryAcquire() {
+    return limit.tryAcquire();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: %s -> %s at most %s", serviceName, version, shadowVersion, limit);
+  }
+}
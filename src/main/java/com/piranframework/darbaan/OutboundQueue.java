@@ -0,0 +1,203 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Outbox of the {@link Connector}, a lane for each {@link Priority}. Any thread may put messages
+ * in, only the socket thread takes them out.
+ * <p>
+ * Lanes are drained either strictly, a lane is served only when all the higher lanes are empty,
+ * or weighted, each lane sends up to its weight in messages per round. Requests are bounded by
+ * the lane capacity, control messages of already accepted requests, like upload chunks and
+ * credits, are always accepted.
+ * <p>
+ * Mirrored copies of the requests wait in a queue of their own, bounded by
+ * {@link #SHADOW_SHARE} of the lane capacity and served only when the LOW lane is empty. So they
+ * never take the capacity or the turn of a request.
+ *
+ * @author Isa Hekmatizadeh
+ */
+final class OutboundQueue {
+
+  private static final Priority[] PRIORITIES = Priority.values();
+  static final double SHADOW_SHARE = 0.1;
+
+  private final Queue<Envelope>[] lanes;
+  private final AtomicInteger[] sizes;
+  private final int[] credits;
+  private final Queue<Envelope> shadows = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger shadowSize = new AtomicInteger();
+  private final Semaphore available = new Semaphore(0);
+  private volatile int capacity;
+  private final boolean strict;
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  OutboundQueue(int capacity, boolean strict) {
+    this.capacity = capacity;
+    this.strict = strict;
+    lanes = new Queue[PRIORITIES.length];
+    sizes = new AtomicInteger[PRIORITIES.length];
+    credits = new int[PRIORITIES.length];
+    for (int i = 0; i < PRIORITIES.length; i++) {
+      lanes[i] = new ConcurrentLinkedQueue<>();
+      sizes[i] = new AtomicInteger();
+    }
+  }
+
+  /**
+   * Put a request in its lane if the lane is not full
+   *
+   * @param envelope message to send
+   * @param priority priority of the message
+   * @return false if the lane is full
+   */
+  boolean offer(Envelope envelope, Priority priority) {
+    AtomicInteger size = sizes[priority.ordinal()];
+    if (size.incrementAndGet() > capacity) {
+      size.decrementAndGet();
+      return false;
+    }
+    lanes[priority.ordinal()].add(envelope);
+    available.release();
+    return true;
+  }
+
+  /**
+   * Put a mirrored copy of a request in the queue if the shadow budget is not exhausted
+   *
+   * @param envelope mirrored request
+   * @return false if the shadow budget is exhausted
+   */
+  boolean offerShadow(Envelope envelope) {
+    if (shadowSize.incrementAndGet() > Math.max(1, (int) (capacity * SHADOW_SHARE))) {
+      shadowSize.decrementAndGet();
+      return false;
+    }
+    shadows.add(envelope);
+    available.release();
+    return true;
+  }
+
+  /**
+   * Put a message in its lane regardless of the lane capacity
+   *
+   * @param envelope message to send
+   * @param priority priority of the message
+   */
+  void add(Envelope envelope, Priority priority) {
+    sizes[priority.ordinal()].incrementAndGet();
+    lanes[priority.ordinal()].add(envelope);
+    available.release();
+  }
+
+  /**
+   * Take the next message to send, waiting up to the timeout if all the lanes are empty. Must be
+   * called by the socket thread only
+   *
+   * @param timeout time to wait
+   * @param unit    unit of the timeout
+   * @return next message or null if nothing arrived in time
+   * @throws InterruptedException if interrupted while waiting
+   */
+  Envelope poll(long timeout, TimeUnit unit) throws InterruptedException {
+    if (!available.tryAcquire(timeout, unit))
+      return null;
+    return strict ? pollStrict() : pollWeighted();
+  }
+
+  int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Change the capacity of the lanes, requests already in a lane are kept even if the lane is
+   * over the new capacity
+   *
+   * @param capacity capacity of each lane
+   */
+  void setCapacity(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Get the number of messages waiting in the lane of a priority
+   *
+   * @param priority priority of the lane
+   * @return number of the waiting messages
+   */
+  int size(Priority priority) {
+    return sizes[priority.ordinal()].get();
+  }
+
+  private Envelope pollStrict() {
+    for (int i = 0; i < lanes.length; i++) {
+      Envelope envelope = take(i);
+      if (Objects.nonNull(envelope))
+        return envelope;
+    }
+    throw new IllegalStateException("signaled without a message");
+  }
+
+  private Envelope pollWeighted() {
+    for (int round = 0; round < 2; round++) {
+      for (int i = 0; i < lanes.length; i++) {
+        if (credits[i] > 0) {
+          Envelope envelope = take(i);
+          if (Objects.nonNull(envelope)) {
+            credits[i]--;
+            return envelope;
+          }
+        }
+      }
+      for (int i = 0; i < lanes.length; i++)
+        credits[i] = PRIORITIES[i].getWeight();
+    }
+    throw new IllegalStateException("signaled without a message");
+  }
+
+  /**
+   * Get the number of mirrored copies waiting to be sent
+   *
+   * @return number of the waiting copies
+   */
+  int shadowSize() {
+    return shadowSize.get();
+  }
+
+  private Envelope take(int lane) {
+    Envelope envelope = lanes[lane].poll();
+    if (Objects.nonNull(envelope)) {
+      sizes[lane].decrementAndGet();
+      return envelope;
+    }
+    if (lane == Priority.LOW.ordinal()) {
+      envelope = shadows.poll();
+      if (Objects.nonNull(envelope))
+        shadowSize.decrementAndGet();
+    }
+    return envelope;
+  }
+}
@@ -35,6 +35,10 @@ class PermissionCache {
     permissions.put(actionAddress, roles);
   }
 
+  int size() {
+    return permissions.size();
+  }
+
   boolean hasAccess(String serviceId, String actionCategory, String action, String role) {
     Collection<String> roles = permissions.get(String.format("%s/%s/%s", serviceId, actionCategory, action));
     return Objects.nonNull(roles) && roles.contains(role);
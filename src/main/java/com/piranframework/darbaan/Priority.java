@@ -0,0 +1,54 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan;
+
+/**
+ * Priority of a request, each priority has its own lane in the outbound queue. By default the
+ * lanes are drained in proportion to their weight, so lower priorities are delayed but never
+ * starved, unless strict priority draining is configured.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public enum Priority {
+  /**
+   * Latency sensitive requests, like interactive user calls
+   */
+  HIGH(8),
+  NORMAL(4),
+  /**
+   * Bulk and background requests
+   */
+  LOW(1);
+
+  private final int weight;
+
+  Priority(int weight) {
+    this.weight = weight;
+  }
+
+  /**
+   * Get the number of messages sent from the lane of this priority in each round of weighted
+   * draining
+   *
+   * @return weight of the lane
+   */
+  public int getWeight() {
+    return weight;
+  }
+}
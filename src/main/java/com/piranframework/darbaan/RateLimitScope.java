@@ -0,0 +1,40 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan;
+
+/**
+ * Scope of a rate limit, decides which requests share the same token bucket
+ *
+ * @author Isa Hekmatizadeh
+ */
+public enum RateLimitScope {
+  /**
+   * All the requests of a role, keyed by the role name
+   */
+  ROLE,
+  /**
+   * All the requests to a service, keyed by the service id like {@code name-version}
+   */
+  SERVICE,
+  /**
+   * All the requests to an action, keyed by the action address like
+   * {@code name-version/category/action}
+   */
+  ACTION
+}
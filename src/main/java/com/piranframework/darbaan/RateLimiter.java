@@ -0,0 +1,178 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan;
+
+import com.piranframework.darbaan.exception.RateLimitExceededException;
+import com.piranframework.darbaan.util.ActionMap;
+import com.piranframework.darbaan.util.TokenBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the rate limits of the roles, services and actions. Checking a request is a few map
+ * lookups and a compare-and-set on each matching {@link TokenBucket}, it never blocks. Action
+ * limits are also indexed in an {@link ActionMap}, so checking never builds an action address.
+ * A request rejected by any bucket gives back the permits it took from the others.
+ * <p>
+ * Limits could be set by the API of {@link Darbaan} or pushed by Dastoor in LIMITS messages.
+ * Changing the limit of a key keeps its bucket, so the requests already counted are not forgotten.
+ *
+ * @author Isa Hekmatizadeh
+ */
+class RateLimiter {
+
+  private static final Logger log = LoggerFactory.getLogger(RateLimiter.class);
+  private final Map<RateLimitScope, Map<String, TokenBucket>> limits =
+      new EnumMap<>(RateLimitScope.class);
+  private final ActionMap<TokenBucket> actions = new ActionMap<>();
+
+  RateLimiter() {
+    for (RateLimitScope scope : RateLimitScope.values())
+      limits.put(scope, new ConcurrentHashMap<>());
+  }
+
+  /**
+   * Set or change the limit of a key
+   *
+   * @param scope scope of the limit
+   * @param key   role, service id or action address depending on the scope
+   * @param rate  permitted requests per second
+   * @param burst number of requests permitted at once after an idle period
+   */
+  void setLimit(RateLimitScope scope, String key, double rate, int burst) {
+    Map<String, TokenBucket> buckets = limits.get(scope);
+    TokenBucket bucket = buckets.get(key);
+    if (Objects.isNull(bucket)) {
+      TokenBucket created = new TokenBucket(rate, burst);
+      bucket = buckets.putIfAbsent(key, created);
+      if (Objects.isNull(bucket)) {
+        if (scope == RateLimitScope.ACTION)
+          indexAction(key, created);
+        return;
+      }
+    }
+    bucket.setRate(rate, burst);
+  }
+
+  void removeLimit(RateLimitScope scope, String key) {
+    if (Objects.nonNull(limits.get(scope).remove(key)) && scope == RateLimitScope.ACTION)
+      indexAction(key, null);
+  }
+
+  /**
+   * Put the bucket of an action address in the action index, or remove it if the bucket is null.
+   * Addresses which are not in the form of {@code serviceId/category/action} never match a
+   * request, so they are not indexed
+   */
+  private void indexAction(String address, TokenBucket bucket) {
+    int actionAt = address.lastIndexOf('/');
+    int categoryAt = actionAt > 0 ? address.lastIndexOf('/', actionAt - 1) : -1;
+    if (categoryAt <= 0)
+      return;
+    String serviceId = address.substring(0, categoryAt);
+    String category = address.substring(categoryAt + 1, actionAt);
+    String action = address.substring(actionAt + 1);
+    if (Objects.isNull(bucket))
+      actions.remove(serviceId, category, action);
+    else
+      actions.putIfAbsent(serviceId, category, action, bucket);
+  }
+
+  /**
+   * Apply a limit in the form of {@code rate/burst}, or remove it if the limit is empty
+   *
+   * @param scope scope name
+   * @param key   key of the limit
+   * @param limit rate and burst separated by slash, burst is optional and defaults to 1
+   */
+  void update(String scope, String key, String limit) {
+    try {
+      RateLimitScope rateLimitScope = RateLimitScope.valueOf(scope);
+      if (Objects.isNull(limit) || limit.isEmpty()) {
+        removeLimit(rateLimitScope, key);
+        return;
+      }
+      String[] parts = limit.split("/");
+      setLimit(rateLimitScope, key, Double.parseDouble(parts[0]),
+          parts.length > 1 ? Integer.parseInt(parts[1]) : 1);
+    } catch (IllegalArgumentException e) {
+      log.error("invalid rate limit {} {}: {}", scope, key, limit, e);
+    }
+  }
+
+  /**
+   * Get the current limits
+   *
+   * @return limits of each scope
+   */
+  Map<RateLimitScope, Map<String, TokenBucket>> getLimits() {
+    Map<RateLimitScope, Map<String, TokenBucket>> copy = new EnumMap<>(RateLimitScope.class);
+    limits.forEach((scope, buckets) ->
+        copy.put(scope, Collections.unmodifiableMap(new HashMap<>(buckets))));
+    return copy;
+  }
+
+  /**
+   * Take a permit from the role, service and action buckets of the request. If any of them
+   * rejects the request, the permits already taken from the others are given back
+   *
+   * @param request   request to check
+   * @param serviceId id of the service the request is sent to
+   * @throws RateLimitExceededException if any of the limits exceeded
+   */
+  void check(Request request, String serviceId) throws RateLimitExceededException {
+    TokenBucket role = bucket(RateLimitScope.ROLE, request.getRole());
+    if (!tryAcquire(role))
+      throw new RateLimitExceededException(request, RateLimitScope.ROLE.name(),
+          request.getRole());
+    TokenBucket service = bucket(RateLimitScope.SERVICE, serviceId);
+    if (!tryAcquire(service)) {
+      release(role);
+      throw new RateLimitExceededException(request, RateLimitScope.SERVICE.name(), serviceId);
+    }
+    if (!tryAcquire(actions.get(serviceId, request.getActionCategory(),
+        request.getActionName()))) {
+      release(role);
+      release(service);
+      throw new RateLimitExceededException(request, RateLimitScope.ACTION.name(),
+          String.format("%s/%s/%s", serviceId, request.getActionCategory(),
+              request.getActionName()));
+    }
+  }
+
+  private TokenBucket bucket(RateLimitScope scope, String key) {
+    return Objects.isNull(key) ? null : limits.get(scope).get(key);
+  }
+
+  private static boolean tryAcquire(TokenBucket bucket) {
+    return Objects.isNull(bucket) || bucket.tryAcquire();
+  }
+
+  private static void release(TokenBucket bucket) {
+    if (Objects.nonNull(bucket))
+      bucket.release();
+  }
+}
@@ -20,13 +20,14 @@
 package com.piranframework.darbaan;
 
 
-import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.piranframework.darbaan.codec.PayloadCodec;
+import com.piranframework.darbaan.codec.PayloadCodecs;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Instance of this class representing a request. The process method of {@link Darbaan}
@@ -37,19 +38,21 @@ import java.util.Objects;
  * <p>
  * Client can set payloadBytes directly or just set the payload, on the condition of setting
  * payload Request object implicitly generate the payloadBytes from the object and may throw
- * JsonParsingException.
+ * IOException. The payload encoded by the codec of the request, which is the codec set by
+ * {@link #setCodec(PayloadCodec)} or the codec bound to the service in the configuration of the
+ * darbaan which sends the request, JSON by default. A payload object encoded by JSON is encoded
+ * again when the request sent, if its service is bound to another codec.
+ * <p>
+ * Large payloads can be set as a {@link ByteBuffer} by {@link #setPayloadBuffer(ByteBuffer)}.
+ * The buffer is sent to the socket as it is, without copying it into an intermediate array.
+ * Payloads too large to hold in memory can be set as a stream by
+ * {@link #setPayloadStream(InputStream)}, then the payload is uploaded in bounded chunks.
  *
  * @author Isa Hekmatizadeh
  */
 public class Request {
 
-  private static final ObjectMapper MAPPER = new ObjectMapper();
-
-  static {
-    MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-    MAPPER.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-    MAPPER.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, true);
-  }
+  private static final ByteBuffer EMPTY_PAYLOAD = ByteBuffer.allocate(0);
 
   private String role;
   private String requestId;
@@ -57,8 +60,19 @@ public class Request {
   private String serviceVersion;
   private String actionCategory;
   private String actionName;
-  private byte[] payloadBytes = new byte[0];
+  private ByteBuffer payloadBuffer = EMPTY_PAYLOAD;
   private Object payload;
+  private PayloadCodec codec;
+  private PayloadCodec serviceCodec;
+  private PayloadCodec encodedBy;
+  private InputStream payloadStream;
+  private String routingKey;
+  private ServiceSelector serviceSelector;
+  private Priority priority = Priority.NORMAL;
+  private long deadline;
+  private boolean hasDeadline;
+  private LatencyBreakdown breakdown;
+  private TraceContext traceContext;
 
   public String getRole() {
     return role;
@@ -110,6 +124,116 @@ public class Request {
     return this;
   }
 
+  public ServiceSelector getServiceSelector() {
+    return serviceSelector;
+  }
+
+  /**
+   * Select the service by a version range instead of an exact version. The service name set to
+   * the name of the selector, the version is resolved each time the request sent
+   *
+   * @param serviceSelector service selector, shared between requests
+   * @return current instance
+   */
+  public Request setService(ServiceSelector serviceSelector) {
+    this.serviceSelector = serviceSelector;
+    this.serviceName = serviceSelector.getName();
+    return this;
+  }
+
+  public String getRoutingKey() {
+    return routingKey;
+  }
+
+  /**
+   * Set the routing key, requests with the same routing key are sent to the same server of the
+   * service, as long as the servers don't change and that server is not overloaded. Requests
+   * without routing key are balanced in round-robin fashion
+   *
+   * @param routingKey routing key, like customer id
+   * @return current instance
+   */
+  public Request setRoutingKey(String routingKey) {
+    this.routingKey = routingKey;
+    return this;
+  }
+
+  public Priority getPriority() {
+    return priority;
+  }
+
+  /**
+   * Set the priority of the request, it decides the lane of the outbound queue the request
+   * waits in. Default is {@link Priority#NORMAL}
+   *
+   * @param priority priority of the request
+   * @return current instance
+   */
+  public Request setPriority(Priority priority) {
+    this.priority = Objects.requireNonNull(priority);
+    return this;
+  }
+
+  /**
+   * Set the time the caller waits for the response, counting from now. The remaining time is sent
+   * to the server so it can drop the request once nobody waits for it, and a request still
+   * waiting in the outbound queue at its deadline is dropped without being sent. Future of the
+   * request fails by {@link com.piranframework.darbaan.exception.DeadlineExceededException}
+   *
+   * @param timeout time to wait for the response
+   * @param unit    unit of the timeout
+   * @return current instance
+   */
+  public Request setTimeout(long timeout, TimeUnit unit) {
+    this.deadline = System.nanoTime() + unit.toNanos(timeout);
+    this.hasDeadline = true;
+    return this;
+  }
+
+  public boolean hasDeadline() {
+    return hasDeadline;
+  }
+
+  /**
+   * Get the time remaining to the deadline of the request
+   *
+   * @param unit unit of the result
+   * @return remaining time, negative if the deadline passed or {@link Long#MAX_VALUE} if the
+   * request has no deadline
+   */
+  public long getRemaining(TimeUnit unit) {
+    if (!hasDeadline)
+      return Long.MAX_VALUE;
+    return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+  }
+
+  public TraceContext getTraceContext() {
+    return traceContext;
+  }
+
+  /**
+   * Set the trace context of the caller, the request is sent in a child span of it
+   *
+   * @param traceContext trace context, or null to not trace the request
+   * @return current instance
+   */
+  public Request setTraceContext(TraceContext traceContext) {
+    this.traceContext = traceContext;
+    return this;
+  }
+
+  long deadline() {
+    return deadline;
+  }
+
+  LatencyBreakdown breakdown() {
+    return breakdown;
+  }
+
+  void setBreakdown(LatencyBreakdown breakdown) {
+    this.breakdown = breakdown;
+  }
+
   public String getActionName() {
     return actionName;
   }
@@ -120,8 +244,20 @@ public class Request {
   }
 
 
+  /**
+   * Get the payload as byte array. If the payload set by a byte array, the same array returned,
+   * otherwise the content of the payload buffer copied into a new array
+   *
+   * @return payload in byte array format
+   */
   public byte[] getPayloadBytes() {
-    return payloadBytes;
+    ByteBuffer buffer = payloadBuffer;
+    if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+        && buffer.remaining() == buffer.array().length)
+      return buffer.array();
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
   }
 
   /**
@@ -131,24 +267,115 @@ public class Request {
    * @return current instance
    */
   public Request setPayloadBytes(byte[] payloadBytes) {
-    this.payloadBytes = payloadBytes;
+    this.payloadBuffer = ByteBuffer.wrap(payloadBytes);
+    this.encodedBy = null;
+    return this;
+  }
+
+  /**
+   * Get a read-only view of the payload. The content is shared with the payload, no copy made
+   *
+   * @return payload in ByteBuffer format
+   */
+  public ByteBuffer getPayloadBuffer() {
+    return payloadBuffer.asReadOnlyBuffer();
+  }
+
+  /**
+   * Set the payload buffer directly. The remaining bytes of the buffer, from its position to its
+   * limit, are sent as payload. The buffer shouldn't be modified until the response arrives
+   *
+   * @param payloadBuffer json serialized payload, could be a slice or a direct buffer
+   * @return current instance
+   */
+  public Request setPayloadBuffer(ByteBuffer payloadBuffer) {
+    this.payloadBuffer = payloadBuffer.slice();
+    this.encodedBy = null;
+    return this;
+  }
+
+  public InputStream getPayloadStream() {
+    return payloadStream;
+  }
+
+  /**
+   * Set a stream to upload the payload from. The stream is read and sent in chunks of
+   * {@link DarbaanConfiguration#getUploadChunkSize()} bytes, holding at most
+   * {@link DarbaanConfiguration#getUploadMemoryLimit()} bytes in memory, and closed at the end.
+   * The payload stream takes precedence over the other payload setters
+   *
+   * @param payloadStream stream of the already serialized payload
+   * @return current instance
+   */
+  public Request setPayloadStream(InputStream payloadStream) {
+    this.payloadStream = payloadStream;
     return this;
   }
 
+  /**
+   * Payload buffer as it is, used by the {@link Connector} to send it without copy
+   *
+   * @return payload buffer
+   */
+  ByteBuffer payload() {
+    return payloadBuffer;
+  }
+
   public Object getPayload() {
     return payload;
   }
 
   /**
-   * Set the payload object, this method automatically serialize payload
+   * Set the payload object, this method automatically serialize payload by the codec of the
+   * request
    *
    * @param payload action argument to be sent
    * @return current instance
-   * @throws JsonProcessingException if serializing payload encounter exception
+   * @throws IOException if serializing payload encounter exception
    */
-  public Request setPayload(Object payload) throws JsonProcessingException {
+  public Request setPayload(Object payload) throws IOException {
     this.payload = payload;
-    this.payloadBytes = MAPPER.writeValueAsBytes(payload);
+    this.encodedBy = getCodec();
+    this.payloadBuffer = ByteBuffer.wrap(encodedBy.encode(payload));
+    return this;
+  }
+
+  /**
+   * Get the codec of the payload, if no codec set explicitly it's the codec bound to the service
+   * in the configuration of the darbaan which sent the request, JSON by default
+   *
+   * @return payload codec
+   */
+  public PayloadCodec getCodec() {
+    if (Objects.nonNull(codec))
+      return codec;
+    return Objects.isNull(serviceCodec) ? PayloadCodecs.JSON : serviceCodec;
+  }
+
+  /**
+   * Set the codec bound to the service of the request, used when no codec set explicitly. The
+   * payload object is encoded again if it was encoded by another codec
+   *
+   * @param serviceCodec codec of the service
+   * @throws IOException if serializing payload encounter exception
+   */
+  void setServiceCodec(PayloadCodec serviceCodec) throws IOException {
+    this.serviceCodec = serviceCodec;
+    PayloadCodec current = getCodec();
+    if (Objects.nonNull(encodedBy) && encodedBy != current) {
+      this.encodedBy = current;
+      this.payloadBuffer = ByteBuffer.wrap(current.encode(payload));
+    }
+  }
+
+  /**
+   * Set the codec to encode the payload by, overriding the codec of the service
+   *
+   * @param codec payload codec
+   * @return current instance
+   */
+  public Request setCodec(PayloadCodec codec) {
+    this.codec = codec;
     return this;
   }
 
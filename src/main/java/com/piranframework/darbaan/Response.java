@@ -19,40 +19,42 @@
 
 package com.piranframework.darbaan;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.piranframework.darbaan.codec.PayloadCodec;
 
 import java.io.IOException;
-import java.util.Objects;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 
 /**
  * Immutable class representing responses of the messages. Every request has a consequence
  * response and the type of the response could be determined by the status field. if status field
  * is 200, request successfully processed and the response is available on the response field
+ * <p>
+ * The deserialized response is cached along with its type, so deserializing again into the same
+ * type returns the cached instance and deserializing into another type decodes the payload again.
  *
  * @author Isa Hekmatizadeh
  */
 public class Response {
 
-  private static final ObjectMapper MAPPER = new ObjectMapper();
-
-  static {
-    MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-    MAPPER.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-    MAPPER.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, true);
-  }
-
   private final String requestId;
   private final int status;
   private final byte[] responseBytes;
+  private final PayloadCodec codec;
+  private final LatencyBreakdown breakdown;
+  private final TraceContext traceContext;
   private Object response;
+  private Type responseType;
 
-  Response(String requestId, int status, byte[] responseBytes) {
+  Response(String requestId, int status, byte[] responseBytes, PayloadCodec codec,
+           LatencyBreakdown breakdown, TraceContext traceContext) {
     this.requestId = requestId;
     this.status = status;
     this.responseBytes = responseBytes;
+    this.codec = codec;
+    this.breakdown = breakdown;
+    this.traceContext = traceContext;
   }
 
   /**
@@ -83,6 +85,42 @@ public class Response {
     return responseBytes;
   }
 
+  /**
+   * Get a read-only view of the response payload, the content is shared with the received frame
+   *
+   * @return payload in ByteBuffer format
+   */
+  public ByteBuffer getResponseBuffer() {
+    return ByteBuffer.wrap(responseBytes).asReadOnlyBuffer();
+  }
+
+  /**
+   * Get the codec which the response payload encoded by
+   *
+   * @return payload codec
+   */
+  public PayloadCodec getCodec() {
+    return codec;
+  }
+
+  /**
+   * Get the time the request spent in each stage until its future completed
+   *
+   * @return latency breakdown, null for the responses of scattered requests
+   */
+  public LatencyBreakdown getLatencyBreakdown() {
+    return breakdown;
+  }
+
+  /**
+   * Get the trace context the server replied with
+   *
+   * @return trace context or null if the request was not traced
+   */
+  public TraceContext getTraceContext() {
+    return traceContext;
+  }
+
   /**
    * Deserialize and return response as instance of Object class
    *
@@ -90,9 +128,7 @@ public class Response {
    * @throws IOException if deserialization failed
    */
   public Object getResponse() throws IOException {
-    if (Objects.isNull(response))
-      response = MAPPER.readValue(responseBytes, Object.class);
-    return response;
+    return getResponse(Object.class);
   }
 
   /**
@@ -102,9 +138,39 @@ public class Response {
    * @return response payload in type of clazz
    * @throws IOException if deserialization failed
    */
-  public <T> T getResponse(Class<T> clazz) throws IOException {
-    if (Objects.isNull(response))
-      response = MAPPER.readValue(responseBytes, clazz);
+  public synchronized <T> T getResponse(Class<T> clazz) throws IOException {
+    if (responseType != clazz) {
+      response = codec.decode(responseBytes, clazz);
+      responseType = clazz;
+    }
     return clazz.cast(response);
   }
+
+  /**
+   * Deserialize and return response as an instance of a generic type, like
+   * {@code new TypeReference<List<Item>>() {}}
+   *
+   * @param type type of the response
+   * @return response payload in the given type
+   * @throws IOException if deserialization failed or the codec can't decode generic types
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T getResponse(TypeReference<T> type) throws IOException {
+    return (T) getResponse(type.getType());
+  }
+
+  /**
+   * Deserialize and return response as an instance of a type, like a parameterized type
+   *
+   * @param type type of the response
+   * @return response payload in the given type
+   * @throws IOException if deserialization failed or the codec can't decode into the type
+   */
+  public synchronized Object getResponse(Type type) throws IOException {
+    if (!type.equals(responseType)) {
+      response = codec.decode(responseBytes, type);
+      responseType = type;
+    }
+    return response;
+  }
 }
@@ -0,0 +1,280 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.piranframework.darbaan;
+
+import com.piranframework.darbaan.exception.DeadlineExceededException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+/**
+ * Streaming response of a request, returned by {@link Darbaan#processStream(Request)}. The server
+ * sends the response as a sequence of CHUNK messages followed by an END message carrying the
+ * status, and this stream reads through the chunks as they arrive.
+ * <p>
+ * The flow is controlled by credits: the server never sends more chunks than the window of the
+ * stream without receiving credit, and credits are granted back as the chunks are read. So at most
+ * a window of chunks is held in memory regardless of the size of the whole response.
+ * <p>
+ * If the request fails before the stream ends, reading throws an {@link IOException} with the
+ * failure as its cause. If the request has a deadline, reading waits for the next chunk at most
+ * until the deadline, then the request is cancelled and reading fails by
+ * {@link DeadlineExceededException}.
+ * <p>
+ * Chunks are offered by the socket thread while the stream is read and closed by the caller
+ * threads. The request is cancelled on the server at most once, whether the stream is closed,
+ * its deadline passes or the server overruns its credit, even if that happens before the request
+ * is sent.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public class ResponseStream extends InputStream {
+
+  private static final byte[] END_MARK = new byte[0];
+  private final String requestId;
+  private final int window;
+  private final BlockingQueue<byte[]> chunks;
+  private volatile IntConsumer creditFn;
+  private volatile Runnable cancelFn;
+  private volatile int status;
+  private volatile Throwable failure;
+  private volatile boolean closed;
+  private volatile boolean cancelRequested;
+  private volatile boolean sent;
+  private final AtomicBoolean cancelled = new AtomicBoolean();
+  private volatile boolean hasDeadline;
+  private volatile long deadline;
+  private volatile boolean ended;
+  private volatile byte[] current;
+  private int position;
+  private int consumed;
+
+  ResponseStream(String requestId, int window) {
+    this.requestId = requestId;
+    this.window = window;
+    this.chunks = new ArrayBlockingQueue<>(window + 1);
+  }
+
+  /**
+   * Get the request id correlated to this response
+   *
+   * @return request id
+   */
+  public String getRequestId() {
+    return requestId;
+  }
+
+  /**
+   * Get the status of the response, it's available after the end of the stream reached and it's 0
+   * before that
+   *
+   * @return status code of response
+   */
+  public int getStatus() {
+    return status;
+  }
+
+  /**
+   * Get the maximum number of chunks the server may send ahead of reading
+   *
+   * @return stream window
+   */
+  int window() {
+    return window;
+  }
+
+  /**
+   * Set the deadline of the request, reading doesn't wait for a chunk beyond it
+   *
+   * @param deadline deadline in {@link System#nanoTime()} scale
+   */
+  void setDeadline(long deadline) {
+    this.deadline = deadline;
+    this.hasDeadline = true;
+  }
+
+  /**
+   * Set the functions which grant credit to the server and cancel the request
+   *
+   * @param creditFn function accepting number of credits to grant
+   * @param cancelFn function to cancel the request on the server
+   */
+  void bind(IntConsumer creditFn, Runnable cancelFn) {
+    this.creditFn = creditFn;
+    this.cancelFn = cancelFn;
+  }
+
+  /**
+   * Mark the request as queued to be sent, so a cancel never overtakes it. If the stream is
+   * already closed or failed, the request is cancelled right away
+   */
+  void sent() {
+    sent = true;
+    if (cancelRequested)
+      cancel();
+  }
+
+  /**
+   * Add a chunk received from the server. A server which sends more chunks than its credit
+   * fails the stream and its request is cancelled
+   *
+   * @param chunk chunk payload
+   */
+  void offer(byte[] chunk) {
+    if (closed)
+      grant(1);
+    else if (!chunks.offer(chunk)) {
+      fail(new IOException("server sent more chunks than granted credit"));
+      cancel();
+    }
+  }
+
+  /**
+   * Mark the end of the stream
+   *
+   * @param status status code of the response
+   */
+  void end(int status) {
+    this.status = status;
+    chunks.offer(END_MARK);
+  }
+
+  /**
+   * Terminate the stream by a failure
+   *
+   * @param cause failure cause
+   */
+  void fail(Throwable cause) {
+    failure = cause;
+    chunks.clear();
+    chunks.offer(END_MARK);
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!nextChunk())
+      return -1;
+    return current[position++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    Objects.requireNonNull(b);
+    if (len == 0)
+      return 0;
+    if (!nextChunk())
+      return -1;
+    int n = Math.min(len, current.length - position);
+    System.arraycopy(current, position, b, off, n);
+    position += n;
+    return n;
+  }
+
+  @Override
+  public int available() {
+    return Objects.isNull(current) ? 0 : current.length - position;
+  }
+
+  /**
+   * Close the stream, chunks arrive after closing are discarded. Closing the stream before its
+   * end cancels the request on the server
+   */
+  @Override
+  public void close() {
+    if (closed)
+      return;
+    closed = true;
+    if (!ended) {
+      cancel();
+      chunks.clear();
+      current = null;
+      return;
+    }
+    int discarded = 0;
+    byte[] chunk = chunks.poll();
+    while (Objects.nonNull(chunk)) {
+      if (chunk != END_MARK)
+        discarded++;
+      chunk = chunks.poll();
+    }
+    current = null;
+    grant(discarded + consumed);
+    consumed = 0;
+  }
+
+  private boolean nextChunk() throws IOException {
+    while (Objects.isNull(current) || position == current.length) {
+      if (ended || closed)
+        return false;
+      byte[] chunk;
+      try {
+        chunk = hasDeadline
+            ? chunks.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS) : chunks.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while waiting for the next chunk");
+      }
+      if (Objects.isNull(chunk)) {
+        ended = true;
+        current = null;
+        cancel();
+        throw new IOException("streaming request " + requestId + " failed",
+            new DeadlineExceededException(requestId));
+      }
+      if (chunk == END_MARK) {
+        ended = true;
+        current = null;
+        if (Objects.nonNull(failure))
+          throw new IOException("streaming request " + requestId + " failed", failure);
+        return false;
+      }
+      current = chunk;
+      position = 0;
+      if (++consumed >= Math.max(1, window / 2)) {
+        grant(consumed);
+        consumed = 0;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Cancel the request on the server once, or as soon as the request is queued to be sent
+   */
+  private void cancel() {
+    cancelRequested = true;
+    Runnable fn = cancelFn;
+    if (sent && Objects.nonNull(fn) && cancelled.compareAndSet(false, true))
+      fn.run();
+  }
+
+  private void grant(int credit) {
+    IntConsumer fn = creditFn;
+    if (credit > 0 && Objects.nonNull(fn) && !ended)
+      fn.accept(credit);
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan;
+
+import com.piranframework.darbaan.model.Server;
+import com.piranframework.darbaan.model.Service;
+
+import java.beans.ConstructorProperties;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Snapshot of the state of a server, exposed by {@link ServicePoolMXBean}
+ *
+ * @author Isa Hekmatizadeh
+ */
+public final class ServerInfo {
+
+  private final String identity;
+  private final List<String> services;
+  private final long lastInteraction;
+  private final int remainingPings;
+  private final int load;
+  private final int weight;
+
+  @ConstructorProperties({"identity", "services", "lastInteraction", "remainingPings", "load",
+      "weight"})
+  public ServerInfo(String identity, List<String> services, long lastInteraction,
+                    int remainingPings, int load, int weight) {
+    this.identity = identity;
+    this.services = services;
+    this.lastInteraction = lastInteraction;
+    this.remainingPings = remainingPings;
+    this.load = load;
+    this.weight = weight;
+  }
+
+  static ServerInfo of(Server server) {
+    return new ServerInfo(server.getIdentity().toString(),
+        server.getServices().stream().map(Service::id).collect(Collectors.toList()),
+        server.getLastInteract(), server.getRemainingPings(), server.getLoad(),
+        server.getWeight());
+  }
+
+  public String getIdentity() {
+    return identity;
+  }
+
+  public List<String> getServices() {
+    return services;
+  }
+
+  /**
+   * @return time of the last message received from the server in epoch milliseconds
+   */
+  public long getLastInteraction() {
+    return lastInteraction;
+  }
+
+  public int getRemainingPings() {
+    return remainingPings;
+  }
+
+  public int getLoad() {
+    return load;
+  }
+
+  public int getWeight() {
+    return weight;
+  }
+}
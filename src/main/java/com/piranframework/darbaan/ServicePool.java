@@ -21,22 +21,29 @@ package com.piranframework.darbaan;
 
 import com.piranframework.darbaan.model.Server;
 import com.piranframework.darbaan.model.Service;
-import com.piranframework.geev.Geev;
-import com.piranframework.geev.GeevConfig;
+import com.piranframework.darbaan.spi.Discovery;
+import com.piranframework.darbaan.util.Version;
 import com.piranframework.geev.Node;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.zeromq.ZFrame;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.StringTokenizer;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
-import static com.piranframework.darbaan.Darbaan.configuration;
 import static com.piranframework.darbaan.util.Constants.ADMIN_ROLE;
 import static com.piranframework.darbaan.util.Constants.CHANNEL_ROLE;
 import static com.piranframework.darbaan.util.Constants.SERVER_ROLE;
@@ -44,11 +51,16 @@ import static com.piranframework.darbaan.util.IdentityUtil.serverId;
 import static com.piranframework.darbaan.util.IdentityUtil.serviceId;
 
 /**
- * Service pool indicate the state of the proximity nodes. By the use of Geev it can discover new
- * node and notify disconnected node on runtime without any special configuration.
+ * Service pool indicate the state of the proximity nodes. By the use of the configured
+ * {@link Discovery}, Geev by default, it can discover new node and notify disconnected node on
+ * runtime.
  * <p>
  * Constructor accept a Consumer function to run when a new node discover. So this class can
  * notify its owner about new nodes
+ * <p>
+ * Requests find their service through an index of the known services which is rebuilt whenever
+ * a service is added or removed. The index resolves an exact version and caches the resolution
+ * of {@link ServiceSelector}s, so both are map lookups without building the service id.
  *
  * @author Isa Hekmatizadeh
  */
@@ -57,42 +69,54 @@ class ServicePool {
   private static final Logger log = LoggerFactory.getLogger(ServicePool.class);
   private final Map<String, Service> services = new ConcurrentHashMap<>();
   private final Map<ZFrame, Server> servers = new ConcurrentHashMap<>();
-  private final Geev geev;
+  private final DarbaanConfiguration configuration;
+  private final Discovery discovery;
   private final Consumer<String> registerNewNode;
   private final Consumer<Node> registerNewAdmin;
   private final Consumer<Node> unregisterAdmin;
+  private final Consumer<Server> serverRemoved;
+  private final Map<String, TrafficSplit> splits = new ConcurrentHashMap<>();
+  private volatile ServiceIndex index = new ServiceIndex(Collections.emptyList());
 
   /**
-   * Start geev node discovery based on the {@link DarbaanConfiguration}
+   * Create the service pool, discovery starts by {@link #start()}
    *
+   * @param configuration   configuration of the darbaan
    * @param registerNewNode consumer to run after a new node found
-   * @throws IOException if geev couldn't open socket
+   * @param serverRemoved   consumer to run after a server left or evicted
    */
-  ServicePool(Consumer<String> registerNewNode, Consumer<Node> registerNewAdmin,
-              Consumer<Node> unregisterAdmin) throws
-      IOException {
+  ServicePool(DarbaanConfiguration configuration, Consumer<String> registerNewNode,
+              Consumer<Node> registerNewAdmin, Consumer<Node> unregisterAdmin,
+              Consumer<Server> serverRemoved) {
+    this.configuration = configuration;
     this.registerNewNode = registerNewNode;
     this.registerNewAdmin = registerNewAdmin;
     this.unregisterAdmin = unregisterAdmin;
+    this.serverRemoved = serverRemoved;
+    this.discovery = configuration.getDiscovery();
+  }
+
+  /**
+   * Start node discovery based on the {@link DarbaanConfiguration}
+   *
+   * @throws IOException if discovery couldn't start
+   */
+  void start() throws IOException {
     Node mySelf = new Node(CHANNEL_ROLE, configuration.getIp(), configuration.getPort());
-    geev = Geev.run(new GeevConfig.Builder()
-        .setMySelf(mySelf)
-        .onJoin(this::join)
-        .onLeave(this::leave)
-        .build());
+    discovery.start(mySelf, this::join, this::leave);
   }
 
   /**
-   * Destroy geev gracefully
+   * Destroy discovery gracefully
    */
   void destroy() {
-    geev.destroy();
+    discovery.destroy();
   }
 
   void notifyRemove(String id) {
     StringTokenizer st = new StringTokenizer(id, ":");
     Node node = new Node(SERVER_ROLE, st.nextToken(), Integer.parseInt(st.nextToken()));
-    geev.nodeDisconnected(node);
+    discovery.nodeDisconnected(node);
     leave(node);
   }
 
@@ -103,8 +127,11 @@ class ServicePool {
     else if (SERVER_ROLE.equals(node.getRole())) {
       Server server = servers.remove(new ZFrame(serverId(node)));
       if (Objects.nonNull(server)) {
-        server.getServices().stream().map(Service::id).forEach(services::remove);
+        List<Service> provided = server.getServices();
         server.destroy();
+        provided.stream().filter(Service::isEmpty).map(Service::id).forEach(services::remove);
+        reindex();
+        serverRemoved.accept(server);
       }
     }
   }
@@ -117,7 +144,7 @@ class ServicePool {
       registerNewAdmin.accept(node);
   }
 
-  void addService(ZFrame serverIdentity, Service service) {
+  synchronized void addService(ZFrame serverIdentity, Service service) {
     log.info("new service {} found in server {}", service.id(), serverIdentity);
     Server server = servers.get(serverIdentity);
     Service oldService = services.get(service.id());
@@ -128,6 +155,7 @@ class ServicePool {
       }
       server.add(service);
       services.put(service.id(), service);
+      reindex();
     } else {
       if (Objects.isNull(server)) {
         server = new Server(serverIdentity);
@@ -137,6 +165,59 @@ class ServicePool {
     }
   }
 
+  /**
+   * Rebuild the service index, called whenever the set of services changes
+   */
+  private synchronized void reindex() {
+    index = new ServiceIndex(services.values());
+  }
+
+  /**
+   * Set the weight which a server advertised
+   *
+   * @param serverIdentity server identity
+   * @param weight         weight of the server
+   */
+  void setWeight(ZFrame serverIdentity, int weight) {
+    log.info("server {} advertised weight {}", serverIdentity, weight);
+    Server server = servers.get(serverIdentity);
+    if (Objects.isNull(server)) {
+      server = new Server(serverIdentity);
+      Server existing = servers.putIfAbsent(serverIdentity, server);
+      if (Objects.nonNull(existing))
+        server = existing;
+    }
+    server.setWeight(weight);
+  }
+
+  /**
+   * Set the shard which a server connected to, before any of its services added so no request
+   * is sent by another shard
+   *
+   * @param serverIdentity server identity
+   * @param shard          shard index
+   */
+  void setShard(ZFrame serverIdentity, int shard) {
+    Server server = servers.get(serverIdentity);
+    if (Objects.isNull(server)) {
+      server = new Server(serverIdentity);
+      Server existing = servers.putIfAbsent(serverIdentity, server);
+      if (Objects.nonNull(existing))
+        server = existing;
+    }
+    server.setShard(shard);
+  }
+
+  /**
+   * Get a known server
+   *
+   * @param serverIdentity server identity
+   * @return the server or null if it's not known
+   */
+  Server server(ZFrame serverIdentity) {
+    return servers.get(serverIdentity);
+  }
+
   /**
    * Record an interaction with a server
    *
@@ -153,24 +234,76 @@ class ServicePool {
    *
    * @return inactiveServers
    */
-  Stream<Server> findInactiveServers() {
-    return servers.values().stream().filter(Server::notResponding);
+  Stream<Server> findInactiveServers(long pingInterval) {
+    return servers.values().stream().filter(s -> s.notResponding(pingInterval));
   }
 
   /**
-   * It's pick a next server to send a request for special service. it act in round-robin fashion
+   * Get the known servers
    *
-   * @param serviceId service the server should provide
-   * @return next server available to provide this service
+   * @return snapshot of the servers
    */
-  ZFrame nextServer(String serviceId) {
-    Service service = services.get(serviceId);
-    if (Objects.isNull(service))
-      return null;
-    Server server = service.nextServer();
-    if (Objects.isNull(server))
-      return null;
-    return server.getIdentity();
+  Collection<Server> servers() {
+    return new ArrayList<>(servers.values());
+  }
+
+  /**
+   * Find the service a request should be sent to, by its selector if it has any or by its exact
+   * service name and version
+   *
+   * @param request request to send
+   * @return the service or null if no known service matches
+   */
+  Service resolve(Request request) {
+    ServiceSelector selector = request.getServiceSelector();
+    if (Objects.nonNull(selector))
+      return index.resolve(selector);
+    return index.exact(request.getServiceName(), request.getServiceVersion());
+  }
+
+  /**
+   * Find a service by its exact name and version
+   *
+   * @param name    service name
+   * @param version service version
+   * @return the service or null if it's not known
+   */
+  Service exact(String name, String version) {
+    return index.exact(name, version);
+  }
+
+  /**
+   * Apply the traffic split rule of the service, if there is any
+   *
+   * @param service    service the request resolved to
+   * @param routingKey routing key of the request, could be null
+   * @return the service the request should be sent to, the same service if it's not diverted or
+   * the target version is not available
+   */
+  Service split(Service service, String routingKey) {
+    if (splits.isEmpty())
+      return service;
+    TrafficSplit split = splits.get(service.id());
+    if (Objects.isNull(split)
+        || !split.divert(routingKey, ThreadLocalRandom.current().nextDouble()))
+      return service;
+    Service target = index.exact(split.getServiceName(), split.getToVersion());
+    return Objects.isNull(target) || target.isEmpty() ? service : target;
+  }
+
+  void setTrafficSplit(TrafficSplit split) {
+    log.info("traffic split set: {}", split);
+    splits.put(serviceId(split.getServiceName(), split.getFromVersion()), split);
+  }
+
+  void removeTrafficSplit(String name, String fromVersion) {
+    TrafficSplit split = splits.remove(serviceId(name, fromVersion));
+    if (Objects.nonNull(split))
+      log.info("traffic split removed: {}", split);
+  }
+
+  Collection<TrafficSplit> getTrafficSplits() {
+    return Collections.unmodifiableCollection(splits.values());
   }
 
   /**
@@ -181,6 +314,67 @@ class ServicePool {
    * @return true if service recognized
    */
   boolean isServiceAvailable(String name, String version) {
-    return services.containsKey(serviceId(name, version));
+    return Objects.nonNull(index.exact(name, version));
+  }
+
+  /**
+   * Check if any version of a service which the selector accepts recognized in darbaan
+   *
+   * @param selector service selector
+   * @return true if service recognized
+   */
+  boolean isServiceAvailable(ServiceSelector selector) {
+    return Objects.nonNull(index.resolve(selector));
+  }
+
+  /**
+   * Get the number of servers of each known service
+   *
+   * @return number of servers by service id
+   */
+  Map<String, Integer> serverCounts() {
+    Map<String, Integer> counts = new HashMap<>();
+    services.forEach((id, service) -> counts.put(id, service.size()));
+    return counts;
+  }
+
+  /**
+   * Immutable snapshot of the known services, indexed by name and version
+   */
+  private static final class ServiceIndex {
+
+    private final Map<String, Map<String, Service>> byVersion = new HashMap<>();
+    private final Map<String, NavigableMap<Version, Service>> sorted = new HashMap<>();
+    private final Map<ServiceSelector, Service> resolved = new ConcurrentHashMap<>();
+
+    ServiceIndex(Collection<Service> services) {
+      for (Service service : services) {
+        byVersion.computeIfAbsent(service.name(), n -> new HashMap<>())
+            .put(service.version(), service);
+        sorted.computeIfAbsent(service.name(), n -> new TreeMap<>())
+            .put(Version.of(service.version()), service);
+      }
+    }
+
+    Service exact(String name, String version) {
+      Map<String, Service> versions = byVersion.get(name);
+      return Objects.isNull(versions) ? null : versions.get(version);
+    }
+
+    Service resolve(ServiceSelector selector) {
+      Service service = resolved.get(selector);
+      if (Objects.nonNull(service))
+        return service;
+      NavigableMap<Version, Service> versions = sorted.get(selector.getName());
+      if (Objects.isNull(versions))
+        return null;
+      for (Map.Entry<Version, Service> e : versions.descendingMap().entrySet()) {
+        if (selector.getRange().matches(e.getKey())) {
+          resolved.putIfAbsent(selector, e.getValue());
+          return e.getValue();
+        }
+      }
+      return null;
+    }
   }
 }
@@ -0,0 +1,41 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Management interface of the known servers and services, registered in the platform MBean
+ * server as {@code com.piranframework.darbaan:type=ServicePool,ip=<ip>,port=<port>}
+ *
+ * @author Isa Hekmatizadeh
+ */
+public interface ServicePoolMXBean {
+
+  /**
+   * @return snapshot of the known servers
+   */
+  List<ServerInfo> getServers();
+
+  /**
+   * @return number of servers of each known service by service id
+   */
+  Map<String, Integer> getServices();
+}
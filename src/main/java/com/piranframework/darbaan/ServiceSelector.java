@@ -0,0 +1,91 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.piranframework.darbaan;
+
+import com.piranframework.darbaan.util.VersionRange;
+
+import java.util.Objects;
+
+/**
+ * Selects a service by its name and a range of versions. Selectors are immutable and meant to be
+ * created once and shared by the requests, resolving a selector to a service is a single map
+ * lookup cached until the known services change.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public final class ServiceSelector {
+
+  private final String name;
+  private final VersionRange range;
+  private final int hash;
+
+  private ServiceSelector(String name, VersionRange range) {
+    this.name = Objects.requireNonNull(name, "service name");
+    this.range = range;
+    this.hash = Objects.hash(name, range);
+  }
+
+  /**
+   * Create a selector
+   *
+   * @param name  service name
+   * @param range version range, see {@link VersionRange} for the supported forms
+   * @return new selector
+   */
+  public static ServiceSelector of(String name, String range) {
+    return new ServiceSelector(name, VersionRange.parse(range));
+  }
+
+  /**
+   * Create a selector choosing the newest version of the service
+   *
+   * @param name service name
+   * @return new selector
+   */
+  public static ServiceSelector latest(String name) {
+    return of(name, "latest");
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public VersionRange getRange() {
+    return range;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    ServiceSelector that = (ServiceSelector) o;
+    return hash == that.hash && name.equals(that.name) && range.equals(that.range);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return name + "@" + range;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.piranframework.darbaan;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request counters of a service version: number of responses, server errors and their latency.
+ * Used to compare the versions of a service while traffic is split between them.
+ * <p>
+ * A response with status 500 or more counted as an error. Latency measured from the time request
+ * routed to a server until its response received.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public final class ServiceStats {
+
+  private final String serviceId;
+  private final LongAdder responses = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder totalLatency = new LongAdder();
+  private volatile long maxLatency;
+
+  ServiceStats(String serviceId) {
+    this.serviceId = serviceId;
+  }
+
+  public String getServiceId() {
+    return serviceId;
+  }
+
+  public long getResponses() {
+    return responses.sum();
+  }
+
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  /**
+   * Get the ratio of the errors to all the responses
+   *
+   * @return error rate between 0 and 1
+   */
+  public double getErrorRate() {
+    long n = responses.sum();
+    return n == 0 ? 0 : (double) errors.sum() / n;
+  }
+
+  /**
+   * Get the mean latency of the responses
+   *
+   * @return mean latency in microseconds
+   */
+  public long getMeanLatencyMicros() {
+    long n = responses.sum();
+    return n == 0 ? 0 : totalLatency.sum() / n / 1000;
+  }
+
+  /**
+   * Get the maximum latency of the responses
+   *
+   * @return max latency in microseconds
+   */
+  public long getMaxLatencyMicros() {
+    return maxLatency / 1000;
+  }
+
+  void record(long latencyNanos, int status) {
+    responses.increment();
+    if (status >= 500)
+      errors.increment();
+    totalLatency.add(latencyNanos);
+    if (latencyNanos > maxLatency)
+      maxLatency = latencyNanos; // racy but monotonic enough for a max gauge
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: responses=%d errors=%d mean=%dus max=%dus", serviceId,
+        getResponses(), getErrors(), getMeanLatencyMicros(), getMaxLatencyMicros());
+  }
+}
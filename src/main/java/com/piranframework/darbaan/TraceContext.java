@@ -0,0 +1,176 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Distributed trace context in the format of W3C traceparent:
+ * {@code 00-<32 hex trace id>-<16 hex parent id>-<2 hex flags>}. It's sent to the server in the
+ * TRACE header of the request and the server echoes its own context in the TRACE header of the
+ * reply.
+ * <p>
+ * Each request message carries a child of the context of the request, with the same trace id
+ * and a new parent id, so the hop through darbaan is a span of its own.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public final class TraceContext {
+
+  private static final int SAMPLED = 0x01;
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final long traceIdHigh;
+  private final long traceIdLow;
+  private final long parentId;
+  private final int flags;
+
+  private TraceContext(long traceIdHigh, long traceIdLow, long parentId, int flags) {
+    this.traceIdHigh = traceIdHigh;
+    this.traceIdLow = traceIdLow;
+    this.parentId = parentId;
+    this.flags = flags;
+  }
+
+  /**
+   * Start a new trace
+   *
+   * @param sampled whether the trace is recorded by the tracing system
+   * @return context of the new trace
+   */
+  public static TraceContext newTrace(boolean sampled) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long high = random.nextLong();
+    long low = random.nextLong();
+    if (high == 0 && low == 0)
+      low = 1;
+    return new TraceContext(high, low, nonZero(random), sampled ? SAMPLED : 0);
+  }
+
+  /**
+   * Parse a traceparent header. Versions after 00 may append fields after the flags, they are
+   * ignored, version 00 must have no more fields and version ff is invalid
+   *
+   * @param traceparent header value
+   * @return trace context
+   * @throws IllegalArgumentException if the value is not a valid traceparent
+   */
+  public static TraceContext parse(String traceparent) {
+    if (Objects.isNull(traceparent) || traceparent.length() < 55
+        || traceparent.charAt(2) != '-' || traceparent.charAt(35) != '-'
+        || traceparent.charAt(52) != '-'
+        || (traceparent.length() > 55 && traceparent.charAt(55) != '-'))
+      throw new IllegalArgumentException("invalid traceparent: " + traceparent);
+    int version = (int) hex(traceparent, 0, 2);
+    if (version == 0xff || (version == 0 && traceparent.length() > 55))
+      throw new IllegalArgumentException("invalid traceparent: " + traceparent);
+    long high = hex(traceparent, 3, 19);
+    long low = hex(traceparent, 19, 35);
+    long parent = hex(traceparent, 36, 52);
+    int flags = (int) hex(traceparent, 53, 55);
+    if ((high == 0 && low == 0) || parent == 0)
+      throw new IllegalArgumentException("invalid traceparent: " + traceparent);
+    return new TraceContext(high, low, parent, flags);
+  }
+
+  /**
+   * Create the context of a span under this context
+   *
+   * @return context with the same trace id and flags and a new parent id
+   */
+  public TraceContext child() {
+    return new TraceContext(traceIdHigh, traceIdLow, nonZero(ThreadLocalRandom.current()), flags);
+  }
+
+  public boolean isSampled() {
+    return (flags & SAMPLED) != 0;
+  }
+
+  public String getTraceId() {
+    char[] chars = new char[32];
+    toHex(traceIdHigh, chars, 0);
+    toHex(traceIdLow, chars, 16);
+    return new String(chars);
+  }
+
+  public String getParentId() {
+    char[] chars = new char[16];
+    toHex(parentId, chars, 0);
+    return new String(chars);
+  }
+
+  private static long nonZero(ThreadLocalRandom random) {
+    long id = random.nextLong();
+    return id == 0 ? 1 : id;
+  }
+
+  private static long hex(String s, int from, int to) {
+    long value = 0;
+    for (int i = from; i < to; i++) {
+      int digit = Character.digit(s.charAt(i), 16);
+      if (digit < 0 || Character.isUpperCase(s.charAt(i)))
+        throw new IllegalArgumentException("invalid traceparent: " + s);
+      value = value << 4 | digit;
+    }
+    return value;
+  }
+
+  private static void toHex(long value, char[] chars, int offset) {
+    for (int i = 15; i >= 0; i--) {
+      chars[offset + i] = HEX[(int) (value & 0xF)];
+      value >>>= 4;
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    TraceContext that = (TraceContext) o;
+    return traceIdHigh == that.traceIdHigh && traceIdLow == that.traceIdLow
+        && parentId == that.parentId && flags == that.flags;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(traceIdHigh, traceIdLow, parentId, flags);
+  }
+
+  /**
+   * Format the context as a traceparent header
+   *
+   * @return traceparent header value
+   */
+  @Override
+  public String toString() {
+    char[] chars = new char[55];
+    chars[0] = '0';
+    chars[1] = '0';
+    chars[2] = '-';
+    toHex(traceIdHigh, chars, 3);
+    toHex(traceIdLow, chars, 19);
+    chars[35] = '-';
+    toHex(parentId, chars, 36);
+    chars[52] = '-';
+    chars[53] = HEX[flags >> 4 & 0xF];
+    chars[54] = HEX[flags & 0xF];
+    return new String(chars);
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.piranframework.darbaan;
+
+import java.util.Objects;
+
+/**
+ * Rule to send a share of the traffic of a service version to another version of the same
+ * service, like sending 5% of test-1 requests to test-2 during a rollout.
+ * <p>
+ * If the rule is sticky, requests with a routing key are split by the hash of the key so the
+ * same key always goes to the same version, other requests are split randomly.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public final class TrafficSplit {
+
+  private static final int BUCKETS = 10000;
+  private final String serviceName;
+  private final String fromVersion;
+  private final String toVersion;
+  private final int share;
+  private final boolean sticky;
+
+  /**
+   * Create a traffic split rule
+   *
+   * @param serviceName service name
+   * @param fromVersion version the requests are sent to
+   * @param toVersion   version to divert the requests to
+   * @param percent     percent of requests to divert, between 0 and 100
+   * @param sticky      if requests of a routing key should stick to one version
+   */
+  public TrafficSplit(String serviceName, String fromVersion, String toVersion, double percent,
+                      boolean sticky) {
+    if (percent < 0 || percent > 100)
+      throw new IllegalArgumentException("percent should be between 0 and 100: " + percent);
+    this.serviceName = Objects.requireNonNull(serviceName);
+    this.fromVersion = Objects.requireNonNull(fromVersion);
+    this.toVersion = Objects.requireNonNull(toVersion);
+    this.share = (int) Math.round(percent * BUCKETS / 100);
+    this.sticky = sticky;
+  }
+
+  public String getServiceName() {
+    return serviceName;
+  }
+
+  public String getFromVersion() {
+    return fromVersion;
+  }
+
+  public String getToVersion() {
+    return toVersion;
+  }
+
+  public double getPercent() {
+    return share * 100.0 / BUCKETS;
+  }
+
+  public boolean isSticky() {
+    return sticky;
+  }
+
+  /**
+   * Decide if a request should be diverted, allocates nothing
+   *
+   * @param routingKey routing key of the request, could be null
+   * @param random     random number between 0 and 1 for requests not split by key
+   * @return true if the request should go to the target version
+   */
+  boolean divert(String routingKey, double random) {
+    int bucket = sticky && Objects.nonNull(routingKey)
+        ? Math.floorMod(routingKey.hashCode() * 0x9E3779B9, BUCKETS)
+        : (int) (random * BUCKETS);
+    return bucket < share;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: %s -> %s %.2f%%%s", serviceName, fromVersion, toVersion,
+        getPercent(), sticky ? " sticky" : "");
+  }
+}
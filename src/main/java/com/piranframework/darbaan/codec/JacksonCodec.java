@@ -0,0 +1,120 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.piranframework.darbaan.codec;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Codec based on Jackson ObjectMapper. The format of the payload determined by the
+ * {@link JsonFactory} given to the constructor, so the same codec serves JSON and the Jackson
+ * binary formats.
+ * <p>
+ * An {@link ObjectReader} and an {@link ObjectWriter} built once per type and cached, so encoding
+ * and decoding of the hot types skip the serializer lookup of the ObjectMapper.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public class JacksonCodec implements PayloadCodec {
+
+  private final String id;
+  private final ObjectMapper mapper;
+  private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+  private final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+
+  /**
+   * Construct a codec with the given id over the given format
+   *
+   * @param id      codec id
+   * @param factory jackson factory of the format
+   */
+  public JacksonCodec(String id, JsonFactory factory) {
+    this.id = id;
+    this.mapper = new ObjectMapper(factory);
+    mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    mapper.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, true);
+  }
+
+  @Override
+  public String id() {
+    return id;
+  }
+
+  @Override
+  public byte[] encode(Object payload) throws JsonProcessingException {
+    if (Objects.isNull(payload))
+      return mapper.writeValueAsBytes(null);
+    return writer(payload.getClass()).writeValueAsBytes(payload);
+  }
+
+  @Override
+  public <T> T decode(byte[] bytes, Class<T> clazz) throws IOException {
+    return reader(clazz).readValue(bytes);
+  }
+
+  @Override
+  public Object decode(byte[] bytes, Type type) throws IOException {
+    return reader(type).readValue(bytes);
+  }
+
+  /**
+   * Deserialize the bytes into an instance of a generic type given by a Jackson TypeReference
+   *
+   * @param bytes serialized payload
+   * @param type  type of the result
+   * @return deserialized payload
+   * @throws IOException if deserialization failed
+   */
+  public <T> T decode(byte[] bytes, TypeReference<T> type) throws IOException {
+    return reader(type.getType()).readValue(bytes);
+  }
+
+  private ObjectWriter writer(Class<?> clazz) {
+    ObjectWriter writer = writers.get(clazz);
+    if (Objects.isNull(writer)) {
+      writer = mapper.writerFor(clazz);
+      writers.putIfAbsent(clazz, writer);
+    }
+    return writer;
+  }
+
+  private ObjectReader reader(Type type) {
+    ObjectReader reader = readers.get(type);
+    if (Objects.isNull(reader)) {
+      reader = mapper.readerFor(mapper.getTypeFactory().constructType(type));
+      readers.putIfAbsent(type, reader);
+    }
+    return reader;
+  }
+}
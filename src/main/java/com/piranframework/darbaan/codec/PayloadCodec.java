@@ -0,0 +1,77 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.piranframework.darbaan.codec;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Payload codec encodes the payload of requests into bytes and decodes the payload of responses.
+ * Every codec has a unique id which carried in the CODEC header of SADA messages, so the other
+ * side knows how to decode the payload.
+ * <p>
+ * Codecs other than the built-in ones in {@link PayloadCodecs} should be registered in the
+ * configuration of darbaan to be recognizable on the received messages.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public interface PayloadCodec {
+
+  /**
+   * Get the codec id, carried in the protocol messages
+   *
+   * @return codec id
+   */
+  String id();
+
+  /**
+   * Serialize the payload into bytes
+   *
+   * @param payload payload object
+   * @return serialized payload
+   * @throws IOException if serialization failed
+   */
+  byte[] encode(Object payload) throws IOException;
+
+  /**
+   * Deserialize the bytes into an instance of clazz
+   *
+   * @param bytes serialized payload
+   * @param clazz type of the result
+   * @return deserialized payload
+   * @throws IOException if deserialization failed or the codec can't decode into clazz
+   */
+  <T> T decode(byte[] bytes, Class<T> clazz) throws IOException;
+
+  /**
+   * Deserialize the bytes into an instance of a generic type. Codecs which don't support generic
+   * types decode only the plain classes
+   *
+   * @param bytes serialized payload
+   * @param type  type of the result
+   * @return deserialized payload
+   * @throws IOException if deserialization failed or the codec can't decode into the type
+   */
+  default Object decode(byte[] bytes, Type type) throws IOException {
+    if (type instanceof Class)
+      return decode(bytes, (Class<?>) type);
+    throw new IOException(String.format("codec %s can't decode generic type %s", id(), type));
+  }
+}
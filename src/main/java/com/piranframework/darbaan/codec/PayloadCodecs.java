@@ -0,0 +1,77 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.piranframework.darbaan.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The built-in payload codecs: JSON, Smile and raw. JSON is the default codec of every service.
+ * <p>
+ * Other codecs are registered and bound to services in the configuration of each darbaan
+ * instance, by {@link com.piranframework.darbaan.DarbaanConfiguration.Builder#registerCodec} and
+ * {@link com.piranframework.darbaan.DarbaanConfiguration.Builder#setServiceCodec}.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public final class PayloadCodecs {
+
+  public static final String JSON_ID = "json";
+  public static final String SMILE_ID = "smile";
+  public static final String RAW_ID = "raw";
+  public static final PayloadCodec JSON = new JacksonCodec(JSON_ID, new JsonFactory());
+  public static final PayloadCodec SMILE = new JacksonCodec(SMILE_ID, new SmileFactory());
+  public static final PayloadCodec RAW = new RawCodec();
+  private static final Map<String, PayloadCodec> BUILT_IN;
+
+  static {
+    Map<String, PayloadCodec> codecs = new HashMap<>();
+    codecs.put(JSON_ID, JSON);
+    codecs.put(SMILE_ID, SMILE);
+    codecs.put(RAW_ID, RAW);
+    BUILT_IN = Collections.unmodifiableMap(codecs);
+  }
+
+  private PayloadCodecs() {
+  }
+
+  /**
+   * Find a built-in codec by its id
+   *
+   * @param id codec id
+   * @return the codec or null if no built-in codec has this id
+   */
+  public static PayloadCodec byId(String id) {
+    return BUILT_IN.get(id);
+  }
+
+  /**
+   * Get the built-in codecs
+   *
+   * @return built-in codecs by their id
+   */
+  public static Map<String, PayloadCodec> builtIn() {
+    return BUILT_IN;
+  }
+}
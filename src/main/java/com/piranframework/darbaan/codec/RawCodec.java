@@ -0,0 +1,62 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.piranframework.darbaan.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pass-through codec, payload bytes sent and received as they are. It accepts byte arrays and
+ * {@link ByteBuffer}s as payload and decodes into byte array, {@link ByteBuffer} or String.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public class RawCodec implements PayloadCodec {
+
+  @Override
+  public String id() {
+    return PayloadCodecs.RAW_ID;
+  }
+
+  @Override
+  public byte[] encode(Object payload) {
+    if (payload instanceof byte[])
+      return (byte[]) payload;
+    if (payload instanceof ByteBuffer) {
+      ByteBuffer buffer = ((ByteBuffer) payload).duplicate();
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return bytes;
+    }
+    throw new IllegalArgumentException("raw codec can't encode " + payload.getClass());
+  }
+
+  @Override
+  public <T> T decode(byte[] bytes, Class<T> clazz) throws IOException {
+    if (clazz == byte[].class || clazz == Object.class)
+      return clazz.cast(bytes);
+    if (clazz == ByteBuffer.class)
+      return clazz.cast(ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+    if (clazz == String.class)
+      return clazz.cast(new String(bytes, StandardCharsets.UTF_8));
+    throw new IOException("raw codec can't decode into " + clazz);
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.discovery;
+
+import com.piranframework.darbaan.util.Constants;
+import com.piranframework.geev.Node;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Topology read from a file with a node in each line, like {@code SERVER 10.0.0.5:5000}. Empty
+ * lines and lines starting with # are ignored. The file is watched, nodes added to it join and
+ * nodes removed from it leave. If the file becomes invalid while watched, the last valid list is
+ * kept. Changes are read after a short delay to let the writer finish, replacing the file by
+ * an atomic move is the safest way to change it.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public class FileDiscovery extends ListDiscovery {
+
+  private static final Logger log = LoggerFactory.getLogger(FileDiscovery.class);
+  private static final long RELOAD_DELAY = 200; //millisecond
+  private final Path file;
+  private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+  private WatchService watcher;
+
+  /**
+   * @param file topology file
+   */
+  public FileDiscovery(Path file) {
+    this(file, Constants.PING_INTERVAL);
+  }
+
+  /**
+   * @param file           topology file
+   * @param rejoinInterval milliseconds to join a node again after darbaan found it dead
+   */
+  public FileDiscovery(Path file, long rejoinInterval) {
+    super(rejoinInterval);
+    this.file = file.toAbsolutePath();
+  }
+
+  @Override
+  public void start(Node mySelf, Consumer<Node> onJoin, Consumer<Node> onLeave)
+      throws IOException {
+    begin(onJoin, onLeave);
+    update(read());
+    watcher = file.getFileSystem().newWatchService();
+    file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_MODIFY);
+    Thread watchThread = new Thread(this::watch);
+    watchThread.setName("darbaan-discovery-watcher");
+    watchThread.setDaemon(true);
+    watchThread.start();
+  }
+
+  private List<Node> read() throws IOException {
+    List<Node> nodes = new ArrayList<>();
+    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+      line = line.trim();
+      if (!line.isEmpty() && !line.startsWith("#"))
+        nodes.add(parse(line));
+    }
+    return nodes;
+  }
+
+  private void watch() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        WatchKey key = watcher.take();
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents())
+          if (file.getFileName().equals(event.context()))
+            changed = true;
+        key.reset();
+        if (changed && reloadScheduled.compareAndSet(false, true))
+          scheduler().schedule(this::reload, RELOAD_DELAY, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      log.debug("stopped watching {}", file);
+    }
+  }
+
+  private void reload() {
+    reloadScheduled.set(false);
+    try {
+      List<Node> nodes = read();
+      log.info("topology file {} changed, {} nodes", file, nodes.size());
+      update(nodes);
+    } catch (IOException | IllegalArgumentException e) {
+      log.error("couldn't read topology file {}, last topology kept:", file, e);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    super.destroy();
+    if (Objects.nonNull(watcher)) {
+      try {
+        watcher.close();
+      } catch (IOException e) {
+        log.warn("couldn't close the watcher of {}", file, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.discovery;
+
+import com.piranframework.darbaan.spi.Discovery;
+import com.piranframework.geev.Geev;
+import com.piranframework.geev.GeevConfig;
+import com.piranframework.geev.Node;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Discover the nodes of the network by Geev, without any configuration. This is the default
+ * discovery
+ *
+ * @author Isa Hekmatizadeh
+ */
+public class GeevDiscovery implements Discovery {
+
+  private Geev geev;
+
+  @Override
+  public void start(Node mySelf, Consumer<Node> onJoin, Consumer<Node> onLeave)
+      throws IOException {
+    geev = Geev.run(new GeevConfig.Builder()
+        .setMySelf(mySelf)
+        .onJoin(onJoin)
+        .onLeave(onLeave)
+        .build());
+  }
+
+  @Override
+  public void nodeDisconnected(Node node) {
+    geev.nodeDisconnected(node);
+  }
+
+  @Override
+  public void destroy() {
+    if (Objects.nonNull(geev))
+      geev.destroy();
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.discovery;
+
+import com.piranframework.darbaan.spi.Discovery;
+import com.piranframework.geev.Node;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Base of the discoveries which get the nodes from a list. A node Darbaan found dead is joined
+ * again after the rejoin interval as long as it's still in the list, so a restarted server is
+ * introduced again.
+ *
+ * @author Isa Hekmatizadeh
+ */
+abstract class ListDiscovery implements Discovery {
+
+  private static final Logger log = LoggerFactory.getLogger(ListDiscovery.class);
+  private final Set<Node> nodes = new HashSet<>();
+  private final long rejoinInterval;
+  private ScheduledExecutorService scheduler;
+  private Consumer<Node> onJoin;
+  private Consumer<Node> onLeave;
+
+  ListDiscovery(long rejoinInterval) {
+    this.rejoinInterval = rejoinInterval;
+  }
+
+  /**
+   * Parse a node from a line of the form {@code ROLE ip:port}, like {@code SERVER 10.0.0.5:5000}
+   *
+   * @param line node definition
+   * @return the node
+   * @throws IllegalArgumentException if the line is not a node definition
+   */
+  static Node parse(String line) {
+    StringTokenizer st = new StringTokenizer(line, " \t:");
+    if (st.countTokens() != 3)
+      throw new IllegalArgumentException("node should be ROLE ip:port but is " + line);
+    String role = st.nextToken();
+    String ip = st.nextToken();
+    try {
+      return new Node(role, ip, Integer.parseInt(st.nextToken()));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("invalid port in node " + line, e);
+    }
+  }
+
+  void begin(Consumer<Node> onJoin, Consumer<Node> onLeave) {
+    this.onJoin = onJoin;
+    this.onLeave = onLeave;
+    scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r);
+      thread.setName("darbaan-discovery");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  ScheduledExecutorService scheduler() {
+    return scheduler;
+  }
+
+  /**
+   * Replace the list of the nodes, nodes not in the current list join and nodes not in the new
+   * list leave
+   *
+   * @param update new list of the nodes
+   */
+  synchronized void update(Collection<Node> update) {
+    Set<Node> left = new HashSet<>(nodes);
+    left.removeAll(update);
+    for (Node node : left) {
+      log.info("node {} removed from the list", node);
+      nodes.remove(node);
+      onLeave.accept(node);
+    }
+    for (Node node : update)
+      if (nodes.add(node))
+        onJoin.accept(node);
+  }
+
+  @Override
+  public void nodeDisconnected(Node node) {
+    scheduler.schedule(() -> rejoin(node), rejoinInterval, TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized void rejoin(Node node) {
+    if (nodes.contains(node))
+      onJoin.accept(node);
+  }
+
+  @Override
+  public void destroy() {
+    if (Objects.nonNull(scheduler))
+      scheduler.shutdownNow();
+  }
+}
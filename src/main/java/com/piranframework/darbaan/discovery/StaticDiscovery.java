@@ -0,0 +1,81 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.discovery;
+
+import com.piranframework.darbaan.util.Constants;
+import com.piranframework.geev.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Fixed topology, all the nodes join as soon as darbaan starts, no discovery delay
+ *
+ * @author Isa Hekmatizadeh
+ */
+public class StaticDiscovery extends ListDiscovery {
+
+  private final List<Node> nodes;
+
+  /**
+   * @param nodes server and admin nodes
+   */
+  public StaticDiscovery(Node... nodes) {
+    this(Arrays.asList(nodes));
+  }
+
+  /**
+   * @param nodes server and admin nodes
+   */
+  public StaticDiscovery(Collection<Node> nodes) {
+    this(nodes, Constants.PING_INTERVAL);
+  }
+
+  /**
+   * @param nodes          server and admin nodes
+   * @param rejoinInterval milliseconds to join a node again after darbaan found it dead
+   */
+  public StaticDiscovery(Collection<Node> nodes, long rejoinInterval) {
+    super(rejoinInterval);
+    this.nodes = new ArrayList<>(nodes);
+  }
+
+  /**
+   * Create a static discovery from node definitions like {@code SERVER 10.0.0.5:5000}
+   *
+   * @param nodes node definitions
+   * @return static discovery of the nodes
+   * @throws IllegalArgumentException if a definition is invalid
+   */
+  public static StaticDiscovery of(String... nodes) {
+    List<Node> list = new ArrayList<>();
+    for (String node : nodes)
+      list.add(parse(node));
+    return new StaticDiscovery(list);
+  }
+
+  @Override
+  public void start(Node mySelf, Consumer<Node> onJoin, Consumer<Node> onLeave) {
+    begin(onJoin, onLeave);
+    update(nodes);
+  }
+}
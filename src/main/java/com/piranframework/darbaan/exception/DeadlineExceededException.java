@@ -0,0 +1,32 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.exception;
+
+/**
+ * Thrown when the deadline of a request passes before its response arrives. If the request is
+ * still waiting in the outbound queue at its deadline, it's dropped without being sent
+ *
+ * @author Isa Hekmatizadeh
+ */
+public class DeadlineExceededException extends RequestRelatedException {
+
+  public DeadlineExceededException(String requestId) {
+    super(String.format("Deadline of request %s exceeded", requestId), requestId);
+  }
+}
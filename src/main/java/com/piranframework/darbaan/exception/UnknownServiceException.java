@@ -27,7 +27,9 @@ import com.piranframework.darbaan.Request;
 public class UnknownServiceException extends RequestRelatedException {
 
   public UnknownServiceException(Request request) {
-    super(String.format("Unknown Service Exception for service: %s-%s",
-        request.getServiceName(), request.getServiceVersion()), request.getRequestId());
+    super(String.format("Unknown Service Exception for service: %s",
+        request.getServiceSelector() == null
+            ? request.getServiceName() + "-" + request.getServiceVersion()
+            : request.getServiceSelector()), request.getRequestId());
   }
 }
@@ -0,0 +1,50 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.metrics;
+
+/**
+ * Request counters of a darbaan instance
+ *
+ * @author Isa Hekmatizadeh
+ */
+public enum Counter {
+  /**
+   * Requests accepted into the outbound queue
+   */
+  SENT,
+  /**
+   * Responses received, a streaming response counted once at its end
+   */
+  RECEIVED,
+  /**
+   * Requests rejected because of a rate limit or a full outbound lane
+   */
+  REJECTED,
+  UNKNOWN_SERVICE,
+  PERMISSION_DENIED,
+  /**
+   * Requests dropped from the outbound queue because their deadline passed
+   */
+  EXPIRED,
+  /**
+   * Requests sent to a server which their deadline or the request timeout passed before the
+   * response arrived
+   */
+  TIMED_OUT
+}
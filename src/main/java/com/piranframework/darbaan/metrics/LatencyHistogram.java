@@ -0,0 +1,128 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent latency histogram with log-linear buckets in the fashion of HdrHistogram. Each power
+ * of two range is divided into {@value #SUB_BUCKETS} linear sub buckets, so every recorded value
+ * is kept within about 3% of its real value, from nanoseconds up to
+ * {@value #MAX_VALUE} nanoseconds (about 18 minutes), larger values are clamped.
+ * <p>
+ * Recording is a few atomic increments on preallocated counters, it never allocates or blocks.
+ * Reading while recording is allowed, the result is a consistent enough approximation.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BITS = 6;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  private static final int HALF = SUB_BUCKETS >> 1;
+  static final long MAX_VALUE = (1L << 40) - 1;
+  private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Record a latency
+   *
+   * @param nanos latency in nanoseconds, negative values recorded as zero
+   */
+  public void record(long nanos) {
+    long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+    counts.incrementAndGet(index(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value))
+      current = max.get();
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Get the mean of the recorded latencies
+   *
+   * @return mean latency in nanoseconds
+   */
+  public long getMean() {
+    long n = count.get();
+    return n == 0 ? 0 : sum.get() / n;
+  }
+
+  /**
+   * Get the maximum recorded latency
+   *
+   * @return max latency in nanoseconds
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Get the latency which the given percentage of the recorded latencies are less than or equal
+   * to it
+   *
+   * @param percentile percentile between 0 and 100, like 99.9
+   * @return latency in nanoseconds, 0 if nothing recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    long n = count.get();
+    if (n == 0)
+      return 0;
+    long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * n));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank)
+        return Math.min(highestValue(i), max.get());
+    }
+    return max.get();
+  }
+
+  static int index(long value) {
+    if (value < SUB_BUCKETS)
+      return (int) value;
+    int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+    return shift * HALF + (int) (value >>> shift);
+  }
+
+  static long highestValue(int index) {
+    if (index < SUB_BUCKETS)
+      return index;
+    int shift = index / HALF - 1;
+    long sub = index % HALF + HALF;
+    return ((sub + 1) << shift) - 1;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count=%d mean=%dus p50=%dus p99=%dus p99.9=%dus max=%dus", getCount(),
+        getMean() / 1000, getValueAtPercentile(50) / 1000, getValueAtPercentile(99) / 1000,
+        getValueAtPercentile(99.9) / 1000, getMax() / 1000);
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.metrics;
+
+import com.piranframework.darbaan.util.ActionMap;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of a darbaan instance: request {@link Counter}s, latency histograms of each service,
+ * action and {@link Stage}, and gauges which are read on demand.
+ * <p>
+ * Histograms are created on the first request to a service or action and kept for the lifetime
+ * of the instance. Callers on the hot path are expected to look a histogram up once per request
+ * and record into it, incrementing counters and recording latencies never allocates. Action
+ * histograms are looked up by service id, category and action name, the action address is built
+ * only once when the histogram is created.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public final class MetricsRegistry {
+
+  private final Map<Counter, LongAdder> counters = new EnumMap<>(Counter.class);
+  private final Map<String, LatencyHistogram> serviceLatencies = new ConcurrentHashMap<>();
+  private final Map<String, LatencyHistogram> actionLatencies = new ConcurrentHashMap<>();
+  private final ActionMap<LatencyHistogram> actionIndex = new ActionMap<>();
+  private final Map<Stage, LatencyHistogram> stageLatencies = new EnumMap<>(Stage.class);
+  private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+  private final Map<String, Supplier<Map<String, ? extends Number>>> gaugeGroups =
+      new ConcurrentHashMap<>();
+
+  public MetricsRegistry() {
+    for (Counter counter : Counter.values())
+      counters.put(counter, new LongAdder());
+    for (Stage stage : Stage.values())
+      stageLatencies.put(stage, new LatencyHistogram());
+  }
+
+  public void increment(Counter counter) {
+    counters.get(counter).increment();
+  }
+
+  public long getCount(Counter counter) {
+    return counters.get(counter).sum();
+  }
+
+  /**
+   * Get the current value of all the counters
+   *
+   * @return counters values
+   */
+  public Map<Counter, Long> getCounters() {
+    Map<Counter, Long> values = new EnumMap<>(Counter.class);
+    counters.forEach((counter, adder) -> values.put(counter, adder.sum()));
+    return values;
+  }
+
+  /**
+   * Get the latency histogram of a service, create it if not exists
+   *
+   * @param serviceId service id
+   * @return latency histogram of the service
+   */
+  public LatencyHistogram serviceLatency(String serviceId) {
+    return histogram(serviceLatencies, serviceId);
+  }
+
+  /**
+   * Get the latency histogram of an action, create it if not exists. The histogram is reported
+   * by its action address like {@code name-version/category/action}
+   *
+   * @param serviceId service id
+   * @param category  action category
+   * @param action    action name
+   * @return latency histogram of the action
+   */
+  public LatencyHistogram actionLatency(String serviceId, String category, String action) {
+    LatencyHistogram histogram = actionIndex.get(serviceId, category, action);
+    if (Objects.isNull(histogram)) {
+      histogram = histogram(actionLatencies,
+          String.format("%s/%s/%s", serviceId, category, action));
+      actionIndex.putIfAbsent(serviceId, category, action, histogram);
+    }
+    return histogram;
+  }
+
+  /**
+   * Get the histogram of the time requests spent in a stage
+   *
+   * @param stage stage of the requests
+   * @return latency histogram of the stage
+   */
+  public LatencyHistogram stageLatency(Stage stage) {
+    return stageLatencies.get(stage);
+  }
+
+  public Map<Stage, LatencyHistogram> getStageLatencies() {
+    return Collections.unmodifiableMap(stageLatencies);
+  }
+
+  public Map<String, LatencyHistogram> getServiceLatencies() {
+    return Collections.unmodifiableMap(serviceLatencies);
+  }
+
+  public Map<String, LatencyHistogram> getActionLatencies() {
+    return Collections.unmodifiableMap(actionLatencies);
+  }
+
+  /**
+   * Register a gauge, its value is read whenever the gauges are read
+   *
+   * @param name  gauge name
+   * @param value function returning the current value of the gauge
+   */
+  public void gauge(String name, LongSupplier value) {
+    gauges.put(name, value);
+  }
+
+  /**
+   * Register a group of gauges which their names are not known in advance, like a gauge for each
+   * service. The name of each gauge is the prefix followed by a dot and the key in the group
+   *
+   * @param prefix name prefix of the gauges
+   * @param values function returning the current values of the gauges
+   */
+  public void gaugeGroup(String prefix, Supplier<Map<String, ? extends Number>> values) {
+    gaugeGroups.put(prefix, values);
+  }
+
+  /**
+   * Read all the gauges
+   *
+   * @return value of each gauge sorted by name
+   */
+  public Map<String, Long> getGauges() {
+    Map<String, Long> values = new TreeMap<>();
+    gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+    gaugeGroups.forEach((prefix, group) -> group.get()
+        .forEach((key, value) -> values.put(prefix + "." + key, value.longValue())));
+    return values;
+  }
+
+  private static LatencyHistogram histogram(Map<String, LatencyHistogram> histograms,
+                                            String key) {
+    LatencyHistogram histogram = histograms.get(key);
+    if (Objects.isNull(histogram)) {
+      histogram = new LatencyHistogram();
+      LatencyHistogram existing = histograms.putIfAbsent(key, histogram);
+      if (Objects.nonNull(existing))
+        histogram = existing;
+    }
+    return histogram;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("counters: ").append(getCounters()).append('\n');
+    sb.append("gauges: ").append(getGauges()).append('\n');
+    stageLatencies.forEach((stage, h) ->
+        sb.append("stage ").append(stage).append(": ").append(h).append('\n'));
+    new TreeMap<>(serviceLatencies).forEach((id, h) ->
+        sb.append("service ").append(id).append(": ").append(h).append('\n'));
+    new TreeMap<>(actionLatencies).forEach((address, h) ->
+        sb.append("action ").append(address).append(": ").append(h).append('\n'));
+    return sb.toString();
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.metrics;
+
+/**
+ * Stages a request passes from calling process until its future completes, in order
+ *
+ * @author Isa Hekmatizadeh
+ */
+public enum Stage {
+  /**
+   * Waiting in the send thread pool
+   */
+  SEND_EXECUTOR,
+  /**
+   * Resolving the service, checking the permission and encoding the message
+   */
+  ROUTING,
+  /**
+   * Waiting in the outbound queue for the socket thread
+   */
+  OUTBOUND_QUEUE,
+  /**
+   * From writing the request on the socket until its reply read from the socket, the network
+   * round trip and the processing time of the server
+   */
+  SERVER,
+  /**
+   * Waiting in the receive thread pool
+   */
+  RECEIVE_EXECUTOR,
+  /**
+   * Decoding the reply and completing the future, including the dependent actions which the
+   * completion runs synchronously
+   */
+  COMPLETION
+}
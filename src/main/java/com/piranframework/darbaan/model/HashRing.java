@@ -0,0 +1,123 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.piranframework.darbaan.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Consistent hash ring over the servers of a service. Every server placed on the ring by
+ * {@link #VIRTUAL_NODES} points, so when a server joins or leaves only its own points are added
+ * or removed and about 1/N of the keys move.
+ * <p>
+ * Lookups are bounded-load: walking the ring clockwise from the key, the first server which its
+ * load doesn't exceed {@link #LOAD_FACTOR} times its fair share of the load is picked. The fair
+ * share of a server is proportional to its weight. So a hot key range can't overload one server
+ * while the others are idle.
+ *
+ * @author Isa Hekmatizadeh
+ */
+class HashRing {
+
+  static final int VIRTUAL_NODES = 160;
+  static final double LOAD_FACTOR = 1.25;
+  private final NavigableMap<Long, Server> ring = new ConcurrentSkipListMap<>();
+
+  /**
+   * Place the server on the ring
+   *
+   * @param server server to add
+   */
+  void add(Server server) {
+    byte[] identity = server.getIdentity().getData();
+    for (int i = 0; i < VIRTUAL_NODES; i++)
+      ring.put(hash(identity, i), server);
+  }
+
+  /**
+   * Remove the server from the ring
+   *
+   * @param server server to remove
+   */
+  void remove(Server server) {
+    byte[] identity = server.getIdentity().getData();
+    for (int i = 0; i < VIRTUAL_NODES; i++)
+      ring.remove(hash(identity, i), server);
+  }
+
+  /**
+   * Find the server of the key
+   *
+   * @param key     routing key
+   * @param servers all the servers on the ring, used to compute the fair share of the load
+   * @return the server of the key or null if ring is empty
+   */
+  Server find(String key, Server[] servers) {
+    long totalLoad = 1;
+    long totalWeight = 0;
+    for (Server server : servers) {
+      totalLoad += server.getLoad();
+      totalWeight += server.getWeight();
+    }
+    double capacityPerWeight = LOAD_FACTOR * totalLoad / Math.max(1, totalWeight);
+    long hash = hash(key);
+    Server candidate = walk(ring.tailMap(hash, true).values(), capacityPerWeight);
+    if (Objects.isNull(candidate))
+      candidate = walk(ring.headMap(hash, false).values(), capacityPerWeight);
+    return candidate;
+  }
+
+  private static Server walk(Collection<Server> points, double capacityPerWeight) {
+    for (Server server : points)
+      if (server.getLoad() < Math.ceil(capacityPerWeight * server.getWeight()))
+        return server;
+    return null;
+  }
+
+  private static long hash(byte[] identity, int replica) {
+    long h = 0xcbf29ce484222325L;
+    for (byte b : identity)
+      h = (h ^ (b & 0xFF)) * 0x100000001b3L;
+    h = (h ^ replica) * 0x100000001b3L;
+    return mix(h);
+  }
+
+  private static long hash(String key) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < key.length(); i++)
+      h = (h ^ key.charAt(i)) * 0x100000001b3L;
+    return mix(h);
+  }
+
+  /**
+   * Finalizer of murmur3, spreads FNV-1a hashes uniformly over the ring
+   */
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
@@ -22,9 +22,10 @@ package com.piranframework.darbaan.model;
 import com.piranframework.darbaan.util.Constants;
 import org.zeromq.ZFrame;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents a server node, in Safir-Darbaan protocol this node should be a Safir node
@@ -34,9 +35,12 @@ import java.util.Objects;
 public class Server {
 
   private final ZFrame identity;
-  private final List<Service> services = new ArrayList<>();
+  private final List<Service> services = new CopyOnWriteArrayList<>();
+  private final AtomicInteger load = new AtomicInteger();
   private volatile long lastInteract = System.currentTimeMillis();
   private volatile int remainInterval = Constants.PING_RETRY;
+  private volatile int weight = 1;
+  private volatile int shard = 0;
 
   /**
    * Construct a Server with the given identity
@@ -61,6 +65,70 @@ public class Server {
     return this;
   }
 
+  /**
+   * Get the weight of the server, servers with more weight get proportionally more requests
+   *
+   * @return weight of the server
+   */
+  public int getWeight() {
+    return weight;
+  }
+
+  /**
+   * Set the weight of the server, which it advertised as its capacity
+   *
+   * @param weight weight of the server, between 1 and {@link Constants#MAX_WEIGHT}
+   * @return current instance
+   */
+  public Server setWeight(int weight) {
+    this.weight = Math.min(Math.max(1, weight), Constants.MAX_WEIGHT);
+    return this;
+  }
+
+  /**
+   * Get the shard of the connector the server connected to, all the messages to the server are
+   * sent by the socket of this shard
+   *
+   * @return shard index
+   */
+  public int getShard() {
+    return shard;
+  }
+
+  public Server setShard(int shard) {
+    this.shard = shard;
+    return this;
+  }
+
+  /**
+   * Get the number of requests sent to the server which are waiting for response
+   *
+   * @return load of the server
+   */
+  public int getLoad() {
+    return load.get();
+  }
+
+  /**
+   * Notify a request sent to the server
+   */
+  public void requestSent() {
+    load.incrementAndGet();
+  }
+
+  /**
+   * Notify the response of a request arrived from the server
+   */
+  public void responseReceived() {
+    load.decrementAndGet();
+  }
+
+  /**
+   * Get the services this server provides. The list is copied on write, so it could be iterated
+   * by any thread while the socket thread changes it
+   *
+   * @return services of the server
+   */
   public List<Service> getServices() {
     return services;
   }
@@ -126,10 +194,20 @@ public class Server {
   /**
    * Check if the last interaction date older than a ping interval
    *
+   * @param pingInterval ping interval in milliseconds
    * @return true if a ping is necessary
    */
-  public boolean notResponding() {
-    return System.currentTimeMillis() - lastInteract > Constants.PING_INTERVAL;
+  public boolean notResponding(long pingInterval) {
+    return System.currentTimeMillis() - lastInteract > pingInterval;
+  }
+
+  /**
+   * Get the number of pings left before the server considered disconnected
+   *
+   * @return remaining ping retries
+   */
+  public int getRemainingPings() {
+    return Math.max(0, remainInterval);
   }
 
   /**
@@ -21,19 +21,28 @@ package com.piranframework.darbaan.model;
 
 import com.piranframework.darbaan.util.IdentityUtil;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Represent a service which multiple servers provide.
+ * <p>
+ * Requests are balanced between the servers by smooth weighted round-robin, every server gets a
+ * share of the requests proportional to its {@link Server#getWeight()} and the picks of a server
+ * are spread evenly instead of coming in bursts. With equal weights it's plain round-robin.
  *
  * @author Isa Hekmatizadeh
  */
 public class Service {
 
-  private final Queue<Server> servers = new ConcurrentLinkedQueue<>();
+  private final HashRing ring = new HashRing();
+  private volatile Server[] servers = new Server[0];
+  private int[] currentWeights = new int[0];
   private final String id;
+  private final String name;
+  private final String version;
 
   /**
    * Construct a service with the given name and version
@@ -43,6 +52,8 @@ public class Service {
    */
   public Service(String name, String version) {
     this.id = IdentityUtil.serviceId(name, version);
+    this.name = name;
+    this.version = version;
   }
 
   /**
@@ -54,15 +65,36 @@ public class Service {
     return id;
   }
 
+  public String name() {
+    return name;
+  }
+
+  public String version() {
+    return version;
+  }
+
+  /**
+   * Check if any server provides this service
+   *
+   * @return true if no server provides this service
+   */
+  public boolean isEmpty() {
+    return servers.length == 0;
+  }
+
   /**
    * Add a server to the list of servers which provide this service
    *
    * @param server server to add
    */
-  void justAdd(Server server) {
-    synchronized (servers) {
-      servers.add(server);
-    }
+  synchronized void justAdd(Server server) {
+    if (Arrays.asList(servers).contains(server))
+      return;
+    Server[] newServers = Arrays.copyOf(servers, servers.length + 1);
+    newServers[servers.length] = server;
+    currentWeights = Arrays.copyOf(currentWeights, newServers.length);
+    servers = newServers;
+    ring.add(server);
   }
 
   /**
@@ -70,26 +102,73 @@ public class Service {
    *
    * @param server server to remove
    */
-  void justRemove(Server server) {
-    synchronized (servers) {
-      servers.remove(server);
-    }
+  synchronized void justRemove(Server server) {
+    int index = Arrays.asList(servers).indexOf(server);
+    if (index < 0)
+      return;
+    Server[] newServers = new Server[servers.length - 1];
+    int[] newWeights = new int[newServers.length];
+    System.arraycopy(servers, 0, newServers, 0, index);
+    System.arraycopy(servers, index + 1, newServers, index, newServers.length - index);
+    System.arraycopy(currentWeights, 0, newWeights, 0, index);
+    System.arraycopy(currentWeights, index + 1, newWeights, index, newWeights.length - index);
+    currentWeights = newWeights;
+    servers = newServers;
+    ring.remove(server);
   }
 
   /**
-   * Return the next server to call for this service. This method act as a round-robin load balancer
+   * Return the next server to call for this service. This method act as a smooth weighted
+   * round-robin load balancer and allocates nothing
    *
    * @return next server to use
    */
-  public Server nextServer() {
-    Server next = servers.peek();
-    if (Objects.isNull(next))
+  public synchronized Server nextServer() {
+    int best = -1;
+    int totalWeight = 0;
+    for (int i = 0; i < servers.length; i++) {
+      int weight = servers[i].getWeight();
+      currentWeights[i] += weight;
+      totalWeight += weight;
+      if (best < 0 || currentWeights[i] > currentWeights[best])
+        best = i;
+    }
+    if (best < 0)
       return null;
-    servers.add(next);
-    servers.poll();
-    return next;
+    currentWeights[best] -= totalWeight;
+    return servers[best];
+  }
+
+  /**
+   * Return the server of the routing key. The same key is routed to the same server as long as
+   * the servers don't change and that server is not overloaded, see {@link HashRing}
+   *
+   * @param routingKey routing key, if it's null act as {@link #nextServer()}
+   * @return server of the key
+   */
+  public Server nextServer(String routingKey) {
+    if (Objects.isNull(routingKey))
+      return nextServer();
+    return ring.find(routingKey, servers);
   }
 
+  /**
+   * Get the number of servers providing this service
+   *
+   * @return number of servers
+   */
+  public int size() {
+    return servers.length;
+  }
+
+  /**
+   * Return all the servers which provide this service
+   *
+   * @return snapshot of the servers
+   */
+  public List<Server> servers() {
+    return new ArrayList<>(Arrays.asList(servers));
+  }
 
   @Override
   public boolean equals(Object o) {
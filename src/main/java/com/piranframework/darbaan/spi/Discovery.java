@@ -0,0 +1,59 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.spi;
+
+import com.piranframework.geev.Node;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Source of the topology: tells Darbaan which server and admin nodes joined or left. Geev
+ * discovery is used by default, implementations can be set by
+ * {@link com.piranframework.darbaan.DarbaanConfiguration.Builder#setDiscovery(Discovery)}
+ *
+ * @author Isa Hekmatizadeh
+ * @see com.piranframework.darbaan.discovery.GeevDiscovery
+ * @see com.piranframework.darbaan.discovery.StaticDiscovery
+ * @see com.piranframework.darbaan.discovery.FileDiscovery
+ */
+public interface Discovery {
+
+  /**
+   * Start discovering, nodes already known may be joined before this method returns
+   *
+   * @param mySelf  node of this darbaan
+   * @param onJoin  called when a node joined
+   * @param onLeave called when a node left
+   * @throws IOException if discovery couldn't start
+   */
+  void start(Node mySelf, Consumer<Node> onJoin, Consumer<Node> onLeave) throws IOException;
+
+  /**
+   * Darbaan found the node dead and removed it, the node should be joined again if it shows up
+   *
+   * @param node disconnected node
+   */
+  void nodeDisconnected(Node node);
+
+  /**
+   * Stop discovering and release the resources
+   */
+  void destroy();
+}
@@ -0,0 +1,106 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.spi;
+
+import com.piranframework.darbaan.Priority;
+import com.piranframework.darbaan.Request;
+import com.piranframework.darbaan.model.Server;
+import com.piranframework.darbaan.model.Service;
+
+/**
+ * Listener of the lifecycle of the requests and servers, meant for tracing and profiling tools.
+ * Implementations are discovered by {@link java.util.ServiceLoader} when darbaan starts, by
+ * listing them in {@code META-INF/services/com.piranframework.darbaan.spi.LifecycleListener}.
+ * <p>
+ * Methods are called on the hot path, some on the socket thread, so they must be fast and must
+ * not block. If no implementation is found, darbaan skips the calls altogether. The arguments are
+ * the objects darbaan already holds, nothing is formatted for the call, so a listener which
+ * ignores an event costs nothing. Listeners should build the names they record, like
+ * {@code server.getIdentity().toString()}, only for the events they actually record, and only
+ * during the call since a server is destroyed after it left.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public interface LifecycleListener {
+
+  /**
+   * A request accepted into the outbound queue
+   *
+   * @param requestId request id
+   * @param service   service the request routed to
+   * @param server    server the request routed to
+   * @param priority  priority of the request
+   */
+  default void requestEnqueued(String requestId, Service service, Server server,
+                               Priority priority) {
+  }
+
+  /**
+   * A request written on the socket by the socket thread
+   *
+   * @param requestId   request id
+   * @param service     service the request routed to
+   * @param server      server the request routed to
+   * @param queuedNanos time the request waited in the outbound queue
+   */
+  default void requestSent(String requestId, Service service, Server server, long queuedNanos) {
+  }
+
+  /**
+   * A reply, or the end of a streaming reply, received from a server
+   *
+   * @param requestId    request id
+   * @param service      service the request routed to
+   * @param server       server which replied
+   * @param status       status of the reply
+   * @param latencyNanos time from routing the request until the reply arrived
+   */
+  default void replyReceived(String requestId, Service service, Server server, int status,
+                             long latencyNanos) {
+  }
+
+  /**
+   * Future of a request completed, successfully or not
+   *
+   * @param request    the request, its service name and version or its selector tell the
+   *                   requested service
+   * @param status     status of the response, -1 if the request failed
+   * @param totalNanos time from calling process until the future completed
+   */
+  default void requestCompleted(Request request, int status, long totalNanos) {
+  }
+
+  /**
+   * A request rejected because its role has no access to the action
+   *
+   * @param request   the request, it carries the role and the action
+   * @param serviceId id of the service the request resolved to
+   */
+  default void permissionRejected(Request request, String serviceId) {
+  }
+
+  /**
+   * A server removed because it didn't respond to the pings
+   *
+   * @param server        the server, it's destroyed after the call
+   * @param silenceMillis time since the last message received from the server
+   */
+  default void serverEvicted(Server server, long silenceMillis) {
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.spi;
+
+import com.piranframework.darbaan.Priority;
+import com.piranframework.darbaan.Request;
+import com.piranframework.darbaan.model.Server;
+import com.piranframework.darbaan.model.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Loads the {@link LifecycleListener} implementations available on the class path
+ *
+ * @author Isa Hekmatizadeh
+ */
+public final class LifecycleListeners {
+
+  private static final Logger log = LoggerFactory.getLogger(LifecycleListeners.class);
+
+  private LifecycleListeners() {
+  }
+
+  /**
+   * Load the listeners, several listeners are combined into one which calls them in turn
+   *
+   * @return the listener or null if there is no implementation
+   */
+  public static LifecycleListener load() {
+    List<LifecycleListener> listeners = new ArrayList<>();
+    for (LifecycleListener listener : ServiceLoader.load(LifecycleListener.class)) {
+      log.info("lifecycle listener {} loaded", listener.getClass().getName());
+      listeners.add(listener);
+    }
+    if (listeners.isEmpty())
+      return null;
+    if (listeners.size() == 1)
+      return listeners.get(0);
+    LifecycleListener[] all = listeners.toArray(new LifecycleListener[0]);
+    return new LifecycleListener() {
+      @Override
+      public void requestEnqueued(String requestId, Service service, Server server,
+                                  Priority priority) {
+        for (LifecycleListener l : all)
+          l.requestEnqueued(requestId, service, server, priority);
+      }
+
+      @Override
+      public void requestSent(String requestId, Service service, Server server,
+                              long queuedNanos) {
+        for (LifecycleListener l : all)
+          l.requestSent(requestId, service, server, queuedNanos);
+      }
+
+      @Override
+      public void replyReceived(String requestId, Service service, Server server, int status,
+                                long latencyNanos) {
+        for (LifecycleListener l : all)
+          l.replyReceived(requestId, service, server, status, latencyNanos);
+      }
+
+      @Override
+      public void requestCompleted(Request request, int status, long totalNanos) {
+        for (LifecycleListener l : all)
+          l.requestCompleted(request, status, totalNanos);
+      }
+
+      @Override
+      public void permissionRejected(Request request, String serviceId) {
+        for (LifecycleListener l : all)
+          l.permissionRejected(request, serviceId);
+      }
+
+      @Override
+      public void serverEvicted(Server server, long silenceMillis) {
+        for (LifecycleListener l : all)
+          l.serverEvicted(server, silenceMillis);
+      }
+    };
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.util;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent map of values per action, keyed by service id, then category, then action name.
+ * Looking a value up is three hash lookups on the strings the request already carries, so the
+ * hot path never builds an action address.
+ *
+ * @param <V> type of the values
+ * @author Isa Hekmatizadeh
+ */
+public final class ActionMap<V> {
+
+  private final Map<String, Map<String, Map<String, V>>> services = new ConcurrentHashMap<>();
+
+  /**
+   * Get the value of an action
+   *
+   * @param serviceId service id
+   * @param category  action category
+   * @param action    action name
+   * @return value of the action or null if there is no value or any of the keys is null
+   */
+  public V get(String serviceId, String category, String action) {
+    if (Objects.isNull(serviceId) || Objects.isNull(category) || Objects.isNull(action))
+      return null;
+    Map<String, Map<String, V>> categories = services.get(serviceId);
+    if (Objects.isNull(categories))
+      return null;
+    Map<String, V> actions = categories.get(category);
+    return Objects.isNull(actions) ? null : actions.get(action);
+  }
+
+  /**
+   * Put the value of an action if it has no value yet
+   *
+   * @param serviceId service id
+   * @param category  action category
+   * @param action    action name
+   * @param value     value to put
+   * @return the existing value or null if the value is put
+   */
+  public V putIfAbsent(String serviceId, String category, String action, V value) {
+    return services.computeIfAbsent(serviceId, s -> new ConcurrentHashMap<>())
+        .computeIfAbsent(category, c -> new ConcurrentHashMap<>())
+        .putIfAbsent(action, value);
+  }
+
+  /**
+   * Remove the value of an action
+   *
+   * @param serviceId service id
+   * @param category  action category
+   * @param action    action name
+   */
+  public void remove(String serviceId, String category, String action) {
+    Map<String, Map<String, V>> categories = services.get(serviceId);
+    Map<String, V> actions = Objects.isNull(categories) ? null : categories.get(category);
+    if (Objects.nonNull(actions))
+      actions.remove(action);
+  }
+}
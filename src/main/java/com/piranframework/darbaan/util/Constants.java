@@ -25,6 +25,8 @@ package com.piranframework.darbaan.util;
 public class Constants {
 
   public static final String ID_REQ_PREFIX = "RQ";
+  public static final String ID_SHADOW_PREFIX = "SH";
+  public static final String MBEAN_DOMAIN = "com.piranframework.darbaan";
   public static final String CHANNEL_ROLE = "CHANNEL";
   public static final String SERVER_ROLE = "SERVER";
   public static final String ADMIN_ROLE = "ADMINISTRATOR";
@@ -42,8 +44,41 @@ public class Constants {
   public static final String PONG = "PONG";
   public static final String REQ = "REQ";
   public static final String REP = "REP";
+  /**
+   * Reserved name of the INTR pair which carries the weight of the server instead of a service
+   */
+  public static final String INTR_WEIGHT = "#WEIGHT";
+  /**
+   * Largest weight a server may advertise, larger weights are capped so the sums of the weights
+   * of a service never overflow
+   */
+  public static final int MAX_WEIGHT = 1000;
+  public static final String CHUNK = "CHUNK";
+  public static final String END = "END";
+  public static final String CREDIT = "CREDIT";
+  public static final String CANCEL = "CANCEL";
+  /**
+   * Optional headers, sent as name and value frames after the payload frame
+   */
+  public static final String HDR_CODEC = "CODEC";
+  public static final String HDR_STREAM = "STREAM";
+  public static final String HDR_UPLOAD = "UPLOAD";
+  /**
+   * Milliseconds remaining to the deadline of the request when it's written on the socket
+   */
+  public static final String HDR_DEADLINE = "DEADLINE";
+  /**
+   * W3C traceparent of the request, echoed by the server in the reply
+   */
+  public static final String HDR_TRACE = "TRACE";
   public static final int PING_RETRY = 3;
   public static final long PING_INTERVAL = 5000; //millisecond
+  public static final long SHADOW_TIMEOUT = 30000; //millisecond
+  public static final long REQUEST_TIMEOUT = 0; //millisecond, no timeout
+  /**
+   * Status recorded for the requests which never responded
+   */
+  public static final int GATEWAY_TIMEOUT = 504;
 
   /**
    * Dastoor Protocol constants
@@ -52,5 +87,6 @@ public class Constants {
   public static final String HLT = "HLT";
   public static final String SEC_REQ = "SEC-REQ";
   public static final String PERMS = "PERMS";
+  public static final String LIMITS = "LIMITS";
   public static final long HLT_INTERVAL = 40000;
 }
@@ -0,0 +1,105 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.piranframework.darbaan.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. It's implemented as generic cell rate algorithm: the bucket keeps the
+ * theoretical arrival time of the next permit in a single {@link AtomicLong}, so acquiring a
+ * permit is a compare-and-set which never blocks and allocates nothing.
+ * <p>
+ * The rate and burst could be changed at runtime, taking effect on the next acquisitions.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public final class TokenBucket {
+
+  private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+  private volatile double rate;
+  private volatile int burst;
+  private volatile long interval;
+  private volatile long tolerance;
+
+  /**
+   * Create a token bucket
+   *
+   * @param rate  permits per second
+   * @param burst number of permits could be acquired at once after an idle period
+   */
+  public TokenBucket(double rate, int burst) {
+    setRate(rate, burst);
+  }
+
+  /**
+   * Change the rate of the bucket
+   *
+   * @param rate  permits per second
+   * @param burst number of permits could be acquired at once after an idle period
+   */
+  public void setRate(double rate, int burst) {
+    if (rate <= 0 || burst < 1)
+      throw new IllegalArgumentException(
+          String.format("invalid token bucket rate %f and burst %d", rate, burst));
+    this.rate = rate;
+    this.burst = burst;
+    this.interval = (long) (1_000_000_000L / rate);
+    this.tolerance = interval * burst;
+  }
+
+  public double getRate() {
+    return rate;
+  }
+
+  public int getBurst() {
+    return burst;
+  }
+
+  /**
+   * Try to acquire a permit without waiting
+   *
+   * @return true if the permit acquired and false if the rate exceeded
+   */
+  public boolean tryAcquire() {
+    long now = System.nanoTime();
+    long emission = interval;
+    long limit = tolerance;
+    while (true) {
+      long tat = theoreticalArrival.get();
+      long next = Math.max(tat == Long.MIN_VALUE ? now : tat, now) + emission;
+      if (next - now > limit)
+        return false;
+      if (theoreticalArrival.compareAndSet(tat, next))
+        return true;
+    }
+  }
+
+  /**
+   * Give back a permit acquired by {@link #tryAcquire()} which is not used after all
+   */
+  public void release() {
+    theoreticalArrival.addAndGet(-interval);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%.2f/s burst %d", rate, burst);
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.piranframework.darbaan.util;
+
+import java.util.Objects;
+
+/**
+ * Comparable service version. A version is a release part optionally followed by '-' and a
+ * pre-release part, like "2.1" or "2.1-beta.2". Both parts are split into segments by '.',
+ * numeric segments are compared as numbers and the others as strings, so "1.10" is newer than
+ * "1.9".
+ * <p>
+ * A pre-release is older than its release, "2-beta" is older than "2", and a numeric pre-release
+ * segment is older than a non-numeric one. Versions compare equal only if their strings are
+ * equal, so distinct versions like "1" and "1.0" are ordered ("1" is older) rather than merged.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public final class Version implements Comparable<Version> {
+
+  private static final String[] NONE = new String[0];
+  private final String value;
+  private final String[] release;
+  private final String[] preRelease;
+
+  private Version(String value) {
+    this.value = value;
+    int dash = value.indexOf('-');
+    this.release = (dash < 0 ? value : value.substring(0, dash)).split("\\.");
+    this.preRelease = dash < 0 ? NONE : value.substring(dash + 1).split("\\.");
+  }
+
+  /**
+   * Parse a version
+   *
+   * @param value version string, like "1", "2.1" or "2.1-beta"
+   * @return parsed version
+   */
+  public static Version of(String value) {
+    return new Version(Objects.requireNonNull(value, "version"));
+  }
+
+  /**
+   * Get the first segment of the version
+   *
+   * @return major segment
+   */
+  public String major() {
+    return release[0];
+  }
+
+  /**
+   * Check if the version has a pre-release part
+   *
+   * @return true if the version is a pre-release
+   */
+  public boolean isPreRelease() {
+    return preRelease.length > 0;
+  }
+
+  @Override
+  public int compareTo(Version o) {
+    int c = compareSegments(release, o.release);
+    if (c != 0)
+      return c;
+    if (isPreRelease() != o.isPreRelease())
+      return isPreRelease() ? -1 : 1;
+    c = compareSegments(preRelease, o.preRelease);
+    return c != 0 ? c : value.compareTo(o.value);
+  }
+
+  private static int compareSegments(String[] a, String[] b) {
+    int n = Math.min(a.length, b.length);
+    for (int i = 0; i < n; i++) {
+      int c = compareSegment(a[i], b[i]);
+      if (c != 0)
+        return c;
+    }
+    return Integer.compare(a.length, b.length);
+  }
+
+  private static int compareSegment(String a, String b) {
+    boolean numericA = isNumeric(a);
+    boolean numericB = isNumeric(b);
+    if (numericA && numericB) {
+      String digitsA = stripLeadingZeros(a);
+      String digitsB = stripLeadingZeros(b);
+      int c = Integer.compare(digitsA.length(), digitsB.length());
+      return c != 0 ? c : digitsA.compareTo(digitsB);
+    }
+    if (numericA != numericB)
+      return numericA ? -1 : 1;
+    return a.compareTo(b);
+  }
+
+  private static String stripLeadingZeros(String digits) {
+    int i = 0;
+    while (i < digits.length() - 1 && digits.charAt(i) == '0')
+      i++;
+    return digits.substring(i);
+  }
+
+  private static boolean isNumeric(String s) {
+    if (s.isEmpty())
+      return false;
+    for (int i = 0; i < s.length(); i++)
+      if (!Character.isDigit(s.charAt(i)))
+        return false;
+    return true;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    return value.equals(((Version) o).value);
+  }
+
+  @Override
+  public int hashCode() {
+    return value.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return value;
+  }
+}
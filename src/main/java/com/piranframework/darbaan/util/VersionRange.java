@@ -0,0 +1,131 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.piranframework.darbaan.util;
+
+import java.util.Objects;
+
+/**
+ * Range of acceptable service versions. Supported forms are:
+ * <ul>
+ * <li>{@code latest} or {@code *}: any version</li>
+ * <li>{@code ^2}: any version with the same major segment, at least the given one, like 2.3</li>
+ * <li>{@code [1,3)}, {@code (1,3]}, {@code [2,]}: versions between the bounds, a bracket includes
+ * its bound and a parenthesis excludes it, an empty bound is unbounded</li>
+ * <li>anything else: exactly that version</li>
+ * </ul>
+ * When multiple versions match, the newest one is chosen. Pre-release versions, like "2-beta",
+ * match only a range which one of its bounds is a pre-release, so {@code latest} or {@code ^2}
+ * never pick a pre-release but {@code [2-alpha,]} or {@code 2-beta} do.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public final class VersionRange {
+
+  private final String spec;
+  private final Version lower;
+  private final boolean lowerInclusive;
+  private final Version upper;
+  private final boolean upperInclusive;
+  private final String major;
+
+  private VersionRange(String spec, Version lower, boolean lowerInclusive, Version upper,
+                       boolean upperInclusive, String major) {
+    this.spec = spec;
+    this.lower = lower;
+    this.lowerInclusive = lowerInclusive;
+    this.upper = upper;
+    this.upperInclusive = upperInclusive;
+    this.major = major;
+  }
+
+  /**
+   * Parse a version range
+   *
+   * @param spec range specification
+   * @return parsed range
+   * @throws IllegalArgumentException if the spec is malformed
+   */
+  public static VersionRange parse(String spec) {
+    String s = Objects.requireNonNull(spec, "version range").trim();
+    if (s.equals("latest") || s.equals("*"))
+      return new VersionRange(s, null, true, null, true, null);
+    if (s.startsWith("^")) {
+      Version min = Version.of(s.substring(1));
+      return new VersionRange(s, min, true, null, true, min.major());
+    }
+    if (s.startsWith("[") || s.startsWith("(")) {
+      int comma = s.indexOf(',');
+      char last = s.charAt(s.length() - 1);
+      if (comma < 0 || (last != ']' && last != ')'))
+        throw new IllegalArgumentException("malformed version range: " + spec);
+      String low = s.substring(1, comma).trim();
+      String high = s.substring(comma + 1, s.length() - 1).trim();
+      return new VersionRange(s, low.isEmpty() ? null : Version.of(low), s.charAt(0) == '[',
+          high.isEmpty() ? null : Version.of(high), last == ']', null);
+    }
+    Version exact = Version.of(s);
+    return new VersionRange(s, exact, true, exact, true, null);
+  }
+
+  /**
+   * Check if a version is in the range
+   *
+   * @param version version to check
+   * @return true if the version matches
+   */
+  public boolean matches(Version version) {
+    if (version.isPreRelease() && !allowsPreRelease())
+      return false;
+    if (Objects.nonNull(major) && !major.equals(version.major()))
+      return false;
+    if (Objects.nonNull(lower)) {
+      int c = version.compareTo(lower);
+      if (c < 0 || (c == 0 && !lowerInclusive))
+        return false;
+    }
+    if (Objects.nonNull(upper)) {
+      int c = version.compareTo(upper);
+      return c < 0 || (c == 0 && upperInclusive);
+    }
+    return true;
+  }
+
+  private boolean allowsPreRelease() {
+    return (Objects.nonNull(lower) && lower.isPreRelease())
+        || (Objects.nonNull(upper) && upper.isPreRelease());
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    return spec.equals(((VersionRange) o).spec);
+  }
+
+  @Override
+  public int hashCode() {
+    return spec.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return spec;
+  }
+}
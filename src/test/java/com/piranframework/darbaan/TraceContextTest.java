@@ -0,0 +1,91 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Isa Hekmatizadeh
+ */
+public class TraceContextTest {
+
+  private static final String TRACEPARENT =
+      "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+  @Test
+  public void parsedContextFormatsBackToTheSameHeader() {
+    TraceContext context = TraceContext.parse(TRACEPARENT);
+    assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", context.getTraceId());
+    assertEquals("00f067aa0ba902b7", context.getParentId());
+    assertTrue(context.isSampled());
+    assertEquals(TRACEPARENT, context.toString());
+    String notSampled = "00-ffffffffffffffff0000000000000001-8000000000000000-00";
+    assertEquals(notSampled, TraceContext.parse(notSampled).toString());
+    assertFalse(TraceContext.parse(notSampled).isSampled());
+  }
+
+  @Test
+  public void newTraceAndChildRoundTrip() {
+    TraceContext trace = TraceContext.newTrace(true);
+    assertEquals(trace, TraceContext.parse(trace.toString()));
+    TraceContext child = trace.child();
+    assertEquals(child, TraceContext.parse(child.toString()));
+    assertEquals(trace.getTraceId(), child.getTraceId());
+    assertNotEquals(trace.getParentId(), child.getParentId());
+    assertFalse(TraceContext.newTrace(false).isSampled());
+  }
+
+  @Test
+  public void laterVersionsMayAppendFields() {
+    TraceContext context = TraceContext.parse("01" + TRACEPARENT.substring(2) + "-extra");
+    assertEquals(TRACEPARENT, context.toString());
+  }
+
+  @Test
+  public void invalidHeadersAreRejected() {
+    String[] invalid = {
+        null,
+        "",
+        TRACEPARENT.substring(0, 54),
+        TRACEPARENT + "-extra",
+        "ff" + TRACEPARENT.substring(2),
+        "zz" + TRACEPARENT.substring(2),
+        "0g" + TRACEPARENT.substring(2),
+        "01" + TRACEPARENT.substring(2) + "extra",
+        TRACEPARENT.toUpperCase(),
+        TRACEPARENT.replace('-', '_'),
+        "00-00000000000000000000000000000000-00f067aa0ba902b7-01",
+        "00-4bf92f3577b34da6a3ce929d0e0e4736-0000000000000000-01"
+    };
+    for (String traceparent : invalid) {
+      try {
+        TraceContext.parse(traceparent);
+        fail("accepted " + traceparent);
+      } catch (IllegalArgumentException expected) {
+        // rejected as expected
+      }
+    }
+  }
+}
@@ -25,6 +25,7 @@ import com.piranframework.darbaan.Darbaan;
 import com.piranframework.darbaan.DarbaanConfiguration;
 import com.piranframework.darbaan.Request;
 import com.piranframework.darbaan.Response;
+import com.piranframework.darbaan.ServiceSelector;
 
 import java.io.IOException;
 import java.util.Collections;
@@ -40,18 +41,17 @@ public class InteractiveServer {
   private static final ObjectMapper MAPPER = new ObjectMapper();
 
   public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
-    Darbaan darbaan = Darbaan.newInstance(new DarbaanConfiguration.Builder()
+    Darbaan darbaan = Darbaan.start(new DarbaanConfiguration.Builder()
         .setIp("192.168.13.51")
         .setPort(6001)
-        .build());
+        .requireService(ServiceSelector.of("test", "1"))
+        .build()).get();
     byte[] payload = new byte[0];
     try {
       payload = MAPPER.writeValueAsBytes(Collections.singletonList("salam"));
     } catch (JsonProcessingException e) {
       e.printStackTrace();
     }
-    while (!darbaan.isServiceAvailable("test", "1"))
-      Thread.sleep(10);
     System.out.println("start requesting...");
 
     int ch = System.in.read();
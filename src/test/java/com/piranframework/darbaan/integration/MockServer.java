@@ -25,14 +25,15 @@ import com.piranframework.darbaan.Darbaan;
 import com.piranframework.darbaan.DarbaanConfiguration;
 import com.piranframework.darbaan.Request;
 import com.piranframework.darbaan.Response;
+import com.piranframework.darbaan.ServiceSelector;
 import com.piranframework.darbaan.exception.RoleHasNotPermissionException;
+import com.piranframework.darbaan.metrics.LatencyHistogram;
 import org.junit.Assert;
 
 import java.io.IOException;
 import java.util.Collections;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
 
 /**
  * @author Isa Hekmatizadeh
@@ -41,25 +42,25 @@ public class MockServer {
 
   private static final ObjectMapper MAPPER = new ObjectMapper();
   private static final int REQUEST_NUM = 30;
-  private static final ConcurrentLinkedQueue<Long> DURATIONS = new ConcurrentLinkedQueue<>();
+  private static final LatencyHistogram DURATIONS = new LatencyHistogram();
 
-  public static void main(String[] args) throws IOException, InterruptedException {
-    Darbaan darbaan = Darbaan.newInstance(new DarbaanConfiguration.Builder()
+  public static void main(String[] args) throws IOException, InterruptedException,
+      ExecutionException {
+    Darbaan darbaan = Darbaan.start(new DarbaanConfiguration.Builder()
         .setIp("192.168.13.51")
         .setPort(6001)
-        .build());
+        .requireService(ServiceSelector.of("test", "1"))
+        .build()).get();
     byte[] payload = new byte[0];
     try {
       payload = MAPPER.writeValueAsBytes(Collections.singletonList("salam"));
     } catch (JsonProcessingException e) {
       e.printStackTrace();
     }
-    while (!darbaan.isServiceAvailable("test", "1"))
-      Thread.sleep(10);
     System.out.println("start requesting...");
     long start = System.currentTimeMillis();
     for (int i = 0; i < REQUEST_NUM; i++) {
-      long begin = System.currentTimeMillis();
+      long begin = System.nanoTime();
       Request request = new Request()
           .setRole("USER")
           .setServiceName("test")
@@ -72,19 +73,15 @@ public class MockServer {
         Assert.assertTrue(t instanceof RoleHasNotPermissionException);
         return "OK";
       }).thenRun(() ->
-          DURATIONS.add(System.currentTimeMillis() - begin));
+          DURATIONS.record(System.nanoTime() - begin));
     }
     System.out.println("requesting done!");
-    while (DURATIONS.size() < REQUEST_NUM)
+    while (DURATIONS.getCount() < REQUEST_NUM)
       Thread.sleep(1);
     long allDuration = System.currentTimeMillis() - start;
     System.out.println("all response fetched");
-    long max = DURATIONS.stream().max(Long::compare).get();
-    long min = DURATIONS.stream().min(Long::compare).get();
-    long average = DURATIONS.stream().collect(Collectors.averagingLong(Long::longValue)).longValue();
-    System.out.println("max duration: " + max);
-    System.out.println("min duration: " + min);
-    System.out.println("average :" + average);
+    System.out.println("durations: " + DURATIONS);
+    System.out.println(darbaan.getMetrics());
     System.out.println("run time: " + allDuration);
     System.out.println("tps: " + REQUEST_NUM * 1000 / allDuration);
   }
@@ -0,0 +1,79 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Isa Hekmatizadeh
+ */
+public class LatencyHistogramTest {
+
+  @Test
+  public void smallValuesHaveBucketsOfTheirOwn() {
+    for (long value = 0; value < 64; value++) {
+      assertEquals(value, LatencyHistogram.index(value));
+      assertEquals(value, LatencyHistogram.highestValue(LatencyHistogram.index(value)));
+    }
+  }
+
+  @Test
+  public void bucketsAreContiguousAndCoverTheirValues() {
+    int previous = LatencyHistogram.index(0);
+    for (long value = 1; value < 1 << 20; value++) {
+      int index = LatencyHistogram.index(value);
+      assertTrue("index of " + value, index == previous || index == previous + 1);
+      if (index != previous)
+        assertEquals(value - 1, LatencyHistogram.highestValue(previous));
+      previous = index;
+    }
+  }
+
+  @Test
+  public void valuesAreKeptWithinThreePercent() {
+    for (long value = 1; value <= LatencyHistogram.MAX_VALUE; value = value * 3 / 2 + 1) {
+      long highest = LatencyHistogram.highestValue(LatencyHistogram.index(value));
+      assertTrue("highest " + highest + " of " + value, highest >= value);
+      assertTrue("highest " + highest + " of " + value, highest - value <= value / 32);
+    }
+  }
+
+  @Test
+  public void largestValueIsTheEndOfTheLastBucket() {
+    assertEquals(LatencyHistogram.MAX_VALUE,
+        LatencyHistogram.highestValue(LatencyHistogram.index(LatencyHistogram.MAX_VALUE)));
+  }
+
+  @Test
+  public void percentilesAreApproximatedAndLargeValuesClamped() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 1000; i++)
+      histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+    long p50 = histogram.getValueAtPercentile(50);
+    assertTrue("p50 " + p50, Math.abs(p50 - 500_000) <= 500_000 / 32);
+    assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), histogram.getValueAtPercentile(100));
+    histogram.record(Long.MAX_VALUE);
+    assertEquals(LatencyHistogram.MAX_VALUE, histogram.getMax());
+  }
+}
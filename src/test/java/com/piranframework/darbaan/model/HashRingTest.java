@@ -0,0 +1,135 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.model;
+
+import org.junit.Test;
+import org.zeromq.ZFrame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Isa Hekmatizadeh
+ */
+public class HashRingTest {
+
+  private static final int KEYS = 10000;
+
+  @Test
+  public void addingServerMovesItsShareOfKeysOnlyToIt() {
+    HashRing ring = new HashRing();
+    List<Server> servers = servers(4);
+    servers.forEach(ring::add);
+    Map<String, Server> before = assign(ring, servers);
+    Server added = new Server(new ZFrame("10.0.0.5:5000"));
+    servers.add(added);
+    ring.add(added);
+    Map<String, Server> after = assign(ring, servers);
+    int moved = 0;
+    for (Map.Entry<String, Server> e : before.entrySet()) {
+      if (after.get(e.getKey()) != e.getValue()) {
+        assertEquals(added, after.get(e.getKey()));
+        moved++;
+      }
+    }
+    double share = (double) moved / KEYS;
+    assertTrue("moved " + share + " of keys", share > 0.12 && share < 0.28);
+  }
+
+  @Test
+  public void removingServerMovesOnlyItsKeys() {
+    HashRing ring = new HashRing();
+    List<Server> servers = servers(5);
+    servers.forEach(ring::add);
+    Map<String, Server> before = assign(ring, servers);
+    Server removed = servers.remove(2);
+    ring.remove(removed);
+    Map<String, Server> after = assign(ring, servers);
+    int moved = 0;
+    for (Map.Entry<String, Server> e : before.entrySet()) {
+      if (e.getValue() == removed)
+        moved++;
+      else
+        assertEquals(e.getValue(), after.get(e.getKey()));
+      assertTrue(after.get(e.getKey()) != removed);
+    }
+    double share = (double) moved / KEYS;
+    assertTrue("moved " + share + " of keys", share > 0.12 && share < 0.28);
+  }
+
+  @Test
+  public void hotKeyLoadStaysWithinBound() {
+    HashRing ring = new HashRing();
+    List<Server> servers = servers(4);
+    servers.forEach(ring::add);
+    Server[] array = servers.toArray(new Server[0]);
+    for (int i = 0; i < 1000; i++) {
+      long totalLoad = servers.stream().mapToLong(Server::getLoad).sum() + 1;
+      Server server = ring.find("hot-customer", array);
+      assertNotNull(server);
+      assertTrue(server.getLoad() < Math.ceil(HashRing.LOAD_FACTOR * totalLoad / servers.size()));
+      server.requestSent();
+    }
+    for (Server server : servers)
+      assertTrue("load " + server.getLoad(), server.getLoad() <= Math.ceil(
+          HashRing.LOAD_FACTOR * 1000 / servers.size()));
+  }
+
+  @Test
+  public void loadBoundFollowsWeight() {
+    HashRing ring = new HashRing();
+    List<Server> servers = servers(2);
+    servers.get(0).setWeight(3);
+    servers.forEach(ring::add);
+    Server[] array = servers.toArray(new Server[0]);
+    for (int i = 0; i < 1000; i++)
+      ring.find("hot-customer", array).requestSent();
+    int heavy = servers.get(0).getLoad();
+    int light = servers.get(1).getLoad();
+    assertTrue("heavy " + heavy, heavy <= Math.ceil(HashRing.LOAD_FACTOR * 1000 * 3 / 4));
+    assertTrue("light " + light, light <= Math.ceil(HashRing.LOAD_FACTOR * 1000 / 4));
+    assertEquals(1000, heavy + light);
+  }
+
+  @Test
+  public void emptyRingFindsNothing() {
+    assertEquals(null, new HashRing().find("key", new Server[0]));
+  }
+
+  private static List<Server> servers(int count) {
+    List<Server> servers = new ArrayList<>();
+    for (int i = 0; i < count; i++)
+      servers.add(new Server(new ZFrame("10.0.0." + i + ":5000")));
+    return servers;
+  }
+
+  private static Map<String, Server> assign(HashRing ring, List<Server> servers) {
+    Server[] array = servers.toArray(new Server[0]);
+    Map<String, Server> assignment = new HashMap<>();
+    for (int i = 0; i < KEYS; i++)
+      assignment.put("customer-" + i, ring.find("customer-" + i, array));
+    return assignment;
+  }
+}
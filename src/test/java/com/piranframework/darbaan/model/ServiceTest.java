@@ -0,0 +1,66 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.model;
+
+import com.piranframework.darbaan.util.Constants;
+import org.junit.Test;
+import org.zeromq.ZFrame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Isa Hekmatizadeh
+ */
+public class ServiceTest {
+
+  @Test
+  public void picksAreProportionalToWeights() {
+    Service service = new Service("test", "1");
+    Server light = new Server(new ZFrame("10.0.0.1:5000")).setWeight(1);
+    Server heavy = new Server(new ZFrame("10.0.0.2:5000")).setWeight(3);
+    service.justAdd(light);
+    service.justAdd(heavy);
+    Map<Server, Integer> picks = pick(service, 400);
+    assertEquals(100, (int) picks.get(light));
+    assertEquals(300, (int) picks.get(heavy));
+  }
+
+  @Test
+  public void hugeAdvertisedWeightsAreCappedAndNeverOverflow() {
+    Server first = new Server(new ZFrame("10.0.0.1:5000")).setWeight(Integer.MAX_VALUE);
+    Server second = new Server(new ZFrame("10.0.0.2:5000")).setWeight(Integer.MAX_VALUE);
+    assertEquals(Constants.MAX_WEIGHT, first.getWeight());
+    Service service = new Service("test", "1");
+    service.justAdd(first);
+    service.justAdd(second);
+    Map<Server, Integer> picks = pick(service, 1000);
+    assertEquals(500, (int) picks.get(first));
+    assertEquals(500, (int) picks.get(second));
+  }
+
+  private static Map<Server, Integer> pick(Service service, int count) {
+    Map<Server, Integer> picks = new HashMap<>();
+    for (int i = 0; i < count; i++)
+      picks.merge(service.nextServer(), 1, Integer::sum);
+    return picks;
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.simulator;
+
+import com.piranframework.darbaan.Darbaan;
+import com.piranframework.darbaan.DarbaanConfiguration;
+import com.piranframework.darbaan.Request;
+import com.piranframework.darbaan.ServiceSelector;
+import com.piranframework.darbaan.discovery.StaticDiscovery;
+import com.piranframework.geev.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.piranframework.darbaan.util.Constants.ADMIN_ROLE;
+
+/**
+ * Capacity test on a single box: a Darbaan, a simulated Dastoor and some simulated servers on the
+ * loopback, driven by the open loop load generator. Arguments, all optional:
+ * <pre>
+ *   CapacityCheck [rate per second] [duration seconds] [servers] [mean latency microseconds]
+ *                 [shards]
+ * </pre>
+ * With several shards the servers are spread over the ports of the shards.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public class CapacityCheck {
+
+  private static final String IP = "127.0.0.1";
+  private static final int PORT = 6001;
+  private static final int DASTOOR_PORT = 6501;
+  private static final int SERVER_BASE_PORT = 7001;
+
+  public static void main(String[] args) throws InterruptedException, ExecutionException {
+    long rate = args.length > 0 ? Long.parseLong(args[0]) : 10000;
+    long duration = args.length > 1 ? Long.parseLong(args[1]) : 30;
+    int serverNum = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+    long meanLatency = args.length > 3 ? Long.parseLong(args[3]) : 500;
+    int shards = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+
+    CompletableFuture<Darbaan> ready = Darbaan.start(new DarbaanConfiguration.Builder()
+        .setIp(IP)
+        .setPort(PORT)
+        .setShards(shards)
+        .setDiscovery(new StaticDiscovery(new Node(ADMIN_ROLE, IP, DASTOOR_PORT)))
+        .requireService(ServiceSelector.of("test", "1"))
+        .setRequirePermissions(true)
+        .build());
+    DastoorSimulator dastoor = new DastoorSimulator(DASTOOR_PORT)
+        .grant("test-1", "testCat", "testAct", "USER")
+        .start();
+    List<SafirSimulator> servers = new ArrayList<>();
+    for (int i = 0; i < serverNum; i++)
+      servers.add(new SafirSimulator.Builder()
+          .setDarbaan(IP, PORT + i % shards)
+          .setAddress(IP, SERVER_BASE_PORT + i)
+          .addService("test", "1")
+          .setLatency(Latency.exponential(meanLatency, TimeUnit.MICROSECONDS))
+          .build()
+          .start());
+    Darbaan darbaan = ready.get();
+    byte[] payload = "[\"salam\"]".getBytes();
+    Supplier<Request> requests = () -> new Request()
+        .setRole("USER")
+        .setServiceName("test")
+        .setServiceVersion("1")
+        .setActionCategory("testCat")
+        .setActionName("testAct")
+        .setPayloadBytes(payload);
+    System.out.println("warming up...");
+    new LoadGenerator(darbaan, requests, rate, 5, TimeUnit.SECONDS).run();
+    System.out.println("running...");
+    LoadGenerator generator =
+        new LoadGenerator(darbaan, requests, rate, duration, TimeUnit.SECONDS);
+    System.out.println(generator.run());
+    System.out.println(darbaan.getMetrics());
+    servers.forEach(SafirSimulator::close);
+    dastoor.close();
+    darbaan.destroy();
+  }
+}
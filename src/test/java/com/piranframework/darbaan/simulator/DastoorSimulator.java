@@ -0,0 +1,121 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.simulator;
+
+import org.zeromq.ZContext;
+import org.zeromq.ZFrame;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMsg;
+
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.piranframework.darbaan.util.Constants.DST_PROTOCOL_HEADER;
+import static com.piranframework.darbaan.util.Constants.PERMS;
+import static com.piranframework.darbaan.util.Constants.SEC_REQ;
+
+/**
+ * Simulated Dastoor which grants the configured permissions, so the requests of a load test pass
+ * the permission check. It announces itself as an ADMIN node by Geev and answers every SEC-REQ by
+ * a PERMS message.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public class DastoorSimulator implements Closeable {
+
+  private static final long POLL_INTERVAL = 100; //millisecond
+
+  private final int port;
+  private final Map<String, String> permissions = new LinkedHashMap<>();
+  private final ZContext ctx = new ZContext(1);
+  private final Thread thread;
+  private volatile boolean stopped = false;
+
+  public DastoorSimulator(int port) {
+    this.port = port;
+    thread = new Thread(this::run);
+    thread.setName("dastoor-simulator");
+  }
+
+  /**
+   * Grant an action to the roles
+   *
+   * @param serviceId      service id, name and version separated by dash
+   * @param actionCategory action category
+   * @param action         action name
+   * @param roles          roles which can call the action
+   * @return this simulator
+   */
+  public DastoorSimulator grant(String serviceId, String actionCategory, String action,
+                                String... roles) {
+    permissions.put(String.format("%s/%s/%s", serviceId, actionCategory, action),
+        String.join("/", roles));
+    return this;
+  }
+
+  /**
+   * Bind the socket and start serving
+   *
+   * @return this simulator
+   */
+  public DastoorSimulator start() {
+    thread.start();
+    return this;
+  }
+
+  @Override
+  public void close() {
+    stopped = true;
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    ctx.destroy();
+  }
+
+  private void run() {
+    ZMQ.Socket router = ctx.createSocket(ZMQ.ROUTER);
+    router.bind("tcp://*:" + port);
+    router.setReceiveTimeOut((int) POLL_INTERVAL);
+    while (!stopped) {
+      ZMsg msg = ZMsg.recvMsg(router);
+      if (Objects.isNull(msg))
+        continue;
+      ZFrame channel = msg.unwrap();
+      if (DST_PROTOCOL_HEADER.equals(msg.popString()) && SEC_REQ.equals(msg.popString()))
+        sendPerms(router, channel);
+    }
+  }
+
+  @SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
+  private void sendPerms(ZMQ.Socket router, ZFrame channel) {
+    ZMsg perms = new ZMsg();
+    perms.add(DST_PROTOCOL_HEADER);
+    perms.add(PERMS);
+    permissions.forEach((action, roles) -> {
+      perms.add(action);
+      perms.add(roles);
+    });
+    perms.wrap(channel);
+    perms.send(router);
+  }
+}
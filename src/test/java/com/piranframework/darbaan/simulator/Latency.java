@@ -0,0 +1,69 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.simulator;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distribution of the time a simulated server takes to reply a request
+ *
+ * @author Isa Hekmatizadeh
+ */
+@FunctionalInterface
+public interface Latency {
+
+  /**
+   * @return time to wait before replying the next request in nanoseconds
+   */
+  long nextNanos();
+
+  static Latency constant(long time, TimeUnit unit) {
+    long nanos = unit.toNanos(time);
+    return () -> nanos;
+  }
+
+  static Latency uniform(long min, long max, TimeUnit unit) {
+    long minNanos = unit.toNanos(min);
+    long maxNanos = unit.toNanos(max);
+    return () -> ThreadLocalRandom.current().nextLong(minNanos, maxNanos + 1);
+  }
+
+  /**
+   * Exponentially distributed latency, the service time of a server with poisson arrivals
+   */
+  static Latency exponential(long mean, TimeUnit unit) {
+    long meanNanos = unit.toNanos(mean);
+    return () -> (long) (-meanNanos * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+  }
+
+  /**
+   * Add a stall, like a GC pause, to the given fraction of the replies
+   *
+   * @param probability probability of a stall between 0 and 1
+   * @param stall       length of the stall
+   * @param unit        unit of the stall
+   * @return latency with stalls
+   */
+  default Latency withStalls(double probability, long stall, TimeUnit unit) {
+    long stallNanos = unit.toNanos(stall);
+    return () -> ThreadLocalRandom.current().nextDouble() < probability
+        ? nextNanos() + stallNanos : nextNanos();
+  }
+}
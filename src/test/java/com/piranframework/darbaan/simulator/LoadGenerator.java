@@ -0,0 +1,198 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.simulator;
+
+import com.piranframework.darbaan.Darbaan;
+import com.piranframework.darbaan.Request;
+import com.piranframework.darbaan.metrics.LatencyHistogram;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Open loop load generator. Requests are issued on a fixed schedule at the configured rate, no
+ * matter how fast Darbaan responds, like independent users do. The latency of each request is
+ * measured from the time it was scheduled to be sent rather than the time it was actually sent,
+ * so a stall of the gateway or of the generator itself is charged to every request it delayed
+ * instead of being hidden, which is known as correcting coordinated omission. The uncorrected
+ * service time is reported as well.
+ * <p>
+ * Requests still outstanding when the drain time passes are counted as timed out and recorded
+ * with the latency they had reached by then, so a stuck gateway shows up in the tail.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public class LoadGenerator {
+
+  private final Darbaan darbaan;
+  private final Supplier<Request> requests;
+  private final long rate;
+  private final long durationNanos;
+  private final long drainNanos;
+
+  /**
+   * @param darbaan  darbaan under test
+   * @param requests creates the next request to send
+   * @param rate     requests per second, between 1 and 1,000,000,000
+   * @param duration how long to generate load
+   * @param unit     unit of the duration
+   * @throws IllegalArgumentException if the rate is out of range
+   */
+  public LoadGenerator(Darbaan darbaan, Supplier<Request> requests, long rate, long duration,
+                       TimeUnit unit) {
+    if (rate < 1 || rate > TimeUnit.SECONDS.toNanos(1))
+      throw new IllegalArgumentException(
+          "rate must be between 1 and 1000000000 requests per second: " + rate);
+    this.darbaan = darbaan;
+    this.requests = requests;
+    this.rate = rate;
+    this.durationNanos = unit.toNanos(duration);
+    this.drainNanos = TimeUnit.SECONDS.toNanos(10);
+  }
+
+  /**
+   * Generate the load, blocks until all the responses arrived or the drain time after the load
+   * passed. The requests not responded by then are recorded as timed out
+   *
+   * @return the result of the run
+   */
+  public Result run() throws InterruptedException {
+    Result result = new Result(rate);
+    long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+    long start = System.nanoTime();
+    long end = start + durationNanos;
+    Map<Long, long[]> outstanding = new ConcurrentHashMap<>();
+    for (long intended = start; intended < end; intended += interval) {
+      long wait = intended - System.nanoTime();
+      if (wait > 0)
+        LockSupport.parkNanos(wait);
+      else
+        result.lag.accumulateAndGet(-wait, Math::max);
+      long sentAt = System.nanoTime();
+      long scheduledAt = intended;
+      long sequence = result.sent.incrementAndGet();
+      outstanding.put(sequence, new long[]{scheduledAt, sentAt});
+      darbaan.process(requests.get()).whenComplete((response, t) -> {
+        if (Objects.isNull(outstanding.remove(sequence)))
+          return;
+        long now = System.nanoTime();
+        result.latency.record(now - scheduledAt);
+        result.serviceTime.record(now - sentAt);
+        if (Objects.isNull(t) && response.getStatus() < 400)
+          result.succeeded.incrementAndGet();
+        else
+          result.failed.incrementAndGet();
+      });
+    }
+    result.loadNanos = System.nanoTime() - start;
+    long drainEnd = System.nanoTime() + drainNanos;
+    while (result.completed() < result.sent.get() && System.nanoTime() < drainEnd)
+      Thread.sleep(1);
+    for (Long sequence : outstanding.keySet()) {
+      long[] times = outstanding.remove(sequence);
+      if (Objects.isNull(times))
+        continue;
+      long now = System.nanoTime();
+      result.latency.record(now - times[0]);
+      result.serviceTime.record(now - times[1]);
+      result.timedOut.incrementAndGet();
+    }
+    return result;
+  }
+
+  public static class Result {
+    private final long rate;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong lag = new AtomicLong();
+    private long loadNanos;
+
+    private Result(long rate) {
+      this.rate = rate;
+    }
+
+    /**
+     * @return latency from the scheduled send time, corrected for coordinated omission
+     */
+    public LatencyHistogram getLatency() {
+      return latency;
+    }
+
+    /**
+     * @return latency from the actual send time, not corrected
+     */
+    public LatencyHistogram getServiceTime() {
+      return serviceTime;
+    }
+
+    public long getSent() {
+      return sent.get();
+    }
+
+    public long getSucceeded() {
+      return succeeded.get();
+    }
+
+    public long getFailed() {
+      return failed.get();
+    }
+
+    /**
+     * @return requests not responded before the drain time passed
+     */
+    public long getTimedOut() {
+      return timedOut.get();
+    }
+
+    /**
+     * @return the most the generator fell behind its schedule in nanoseconds
+     */
+    public long getMaxLag() {
+      return lag.get();
+    }
+
+    /**
+     * @return completed requests per second during the load
+     */
+    public double getThroughput() {
+      return loadNanos == 0 ? 0 : completed() * 1e9 / loadNanos;
+    }
+
+    private long completed() {
+      return succeeded.get() + failed.get();
+    }
+
+    @Override
+    public String toString() {
+      return String.format("target=%d/s throughput=%.0f/s sent=%d succeeded=%d failed=%d "
+              + "timedOut=%d maxLag=%dus%n  latency:      %s%n  service time: %s", rate,
+          getThroughput(), getSent(), getSucceeded(), getFailed(), getTimedOut(),
+          getMaxLag() / 1000, latency, serviceTime);
+    }
+  }
+}
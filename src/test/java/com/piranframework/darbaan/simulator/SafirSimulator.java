@@ -0,0 +1,346 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.simulator;
+
+import com.piranframework.darbaan.util.Constants;
+import org.zeromq.ZContext;
+import org.zeromq.ZFrame;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMsg;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.piranframework.darbaan.util.Constants.HDR_CODEC;
+import static com.piranframework.darbaan.util.Constants.HDR_TRACE;
+import static com.piranframework.darbaan.util.Constants.PROTOCOL_HEADER;
+
+/**
+ * Simulated Safir server speaking SADA1, to test and benchmark Darbaan without real servers. It
+ * connects a DEALER socket to Darbaan with the identity {@code ip:port}, introduces its services
+ * without waiting for discovery and replies every REQ by echoing its payload after a latency drawn
+ * from the configured distribution. A fraction of the replies can fail with an error status and a
+ * fraction of the PINGs can be left unanswered, a pong loss of 1 makes the server look dead.
+ * <p>
+ * All socket work is done by a single thread, replies are kept in a queue ordered by their due
+ * time.
+ *
+ * @author Isa Hekmatizadeh
+ */
+public class SafirSimulator implements Closeable {
+
+  private static final long MAX_POLL = 10; //millisecond
+
+  private final String identity;
+  private final String endpoint;
+  private final Map<String, List<String>> services;
+  private final int weight;
+  private final Latency latency;
+  private final double errorRate;
+  private final int errorStatus;
+  private final double pongLoss;
+  private final ZContext ctx = new ZContext(1);
+  private final Thread thread;
+  private final AtomicLong received = new AtomicLong();
+  private final AtomicLong replied = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong cancelled = new AtomicLong();
+  private final AtomicLong pings = new AtomicLong();
+  private final PriorityQueue<Reply> due = new PriorityQueue<>();
+  private final Map<String, Reply> dueById = new HashMap<>();
+  private volatile boolean stopped = false;
+
+  private SafirSimulator(Builder builder) {
+    this.identity = builder.ip + ":" + builder.port;
+    this.endpoint = String.format("tcp://%s:%d", builder.darbaanIp, builder.darbaanPort);
+    this.services = builder.services;
+    this.weight = builder.weight;
+    this.latency = builder.latency;
+    this.errorRate = builder.errorRate;
+    this.errorStatus = builder.errorStatus;
+    this.pongLoss = builder.pongLoss;
+    thread = new Thread(this::run);
+    thread.setName("safir-simulator-" + identity);
+  }
+
+  /**
+   * Connect to Darbaan and start serving
+   *
+   * @return this simulator
+   */
+  public SafirSimulator start() {
+    thread.start();
+    return this;
+  }
+
+  @Override
+  public void close() {
+    stopped = true;
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    ctx.destroy();
+  }
+
+  public String getIdentity() {
+    return identity;
+  }
+
+  public long getReceived() {
+    return received.get();
+  }
+
+  public long getReplied() {
+    return replied.get();
+  }
+
+  public long getFailed() {
+    return failed.get();
+  }
+
+  public long getCancelled() {
+    return cancelled.get();
+  }
+
+  public long getPings() {
+    return pings.get();
+  }
+
+  private void run() {
+    ZMQ.Socket dealer = ctx.createSocket(ZMQ.DEALER);
+    dealer.setIdentity(identity.getBytes());
+    dealer.setSndHWM(0);
+    dealer.setRcvHWM(0);
+    dealer.connect(endpoint);
+    ZMQ.Poller poller = ctx.createPoller(1);
+    poller.register(dealer, ZMQ.Poller.POLLIN);
+    introduce(dealer);
+    while (!stopped && !Thread.currentThread().isInterrupted()) {
+      long wait = sendDueReplies(dealer);
+      if (poller.poll(Math.min(TimeUnit.NANOSECONDS.toMillis(wait), MAX_POLL)) > 0) {
+        ZMsg msg = ZMsg.recvMsg(dealer, ZMQ.NOBLOCK);
+        while (Objects.nonNull(msg)) {
+          handle(dealer, msg);
+          msg = ZMsg.recvMsg(dealer, ZMQ.NOBLOCK);
+        }
+      } else if (wait < TimeUnit.MILLISECONDS.toNanos(1))
+        LockSupport.parkNanos(wait); // poll has millisecond resolution
+    }
+  }
+
+  /**
+   * Send the replies which their time has come
+   *
+   * @return nanoseconds to the next due reply
+   */
+  private long sendDueReplies(ZMQ.Socket dealer) {
+    Reply reply = due.peek();
+    while (Objects.nonNull(reply)) {
+      long wait = reply.dueAt - System.nanoTime();
+      if (wait > 0)
+        return wait;
+      due.poll();
+      dueById.remove(reply.requestId);
+      reply.msg.send(dealer);
+      replied.incrementAndGet();
+      reply = due.peek();
+    }
+    return TimeUnit.MILLISECONDS.toNanos(MAX_POLL);
+  }
+
+  private void handle(ZMQ.Socket dealer, ZMsg msg) {
+    msg.pop(); //empty frame
+    if (!PROTOCOL_HEADER.equals(msg.popString()))
+      return;
+    String command = msg.popString();
+    switch (command) {
+      case Constants.RINTR:
+        introduce(dealer);
+        break;
+      case Constants.PING:
+        pings.incrementAndGet();
+        if (ThreadLocalRandom.current().nextDouble() >= pongLoss)
+          send(dealer, Constants.PONG);
+        break;
+      case Constants.REQ:
+        handleRequest(msg);
+        break;
+      case Constants.CANCEL:
+        Reply reply = dueById.remove(msg.popString());
+        if (Objects.nonNull(reply) && due.remove(reply))
+          cancelled.incrementAndGet();
+        break;
+      default: // CHUNK, END and CREDIT of streams are ignored, the whole reply is sent at once
+    }
+  }
+
+  private void handleRequest(ZMsg msg) {
+    received.incrementAndGet();
+    String requestId = msg.popString();
+    msg.pop(); // service name
+    msg.pop(); // service version
+    msg.pop(); // action category
+    msg.pop(); // action name
+    ZFrame payload = msg.pop();
+    ZMsg reply = new ZMsg();
+    reply.add(PROTOCOL_HEADER);
+    reply.add(Constants.REP);
+    reply.add(requestId);
+    boolean fail = ThreadLocalRandom.current().nextDouble() < errorRate;
+    if (fail)
+      failed.incrementAndGet();
+    reply.add(status(fail ? errorStatus : 200));
+    reply.add(payload);
+    String header = msg.popString();
+    while (Objects.nonNull(header)) {
+      String value = msg.popString();
+      if (HDR_CODEC.equals(header) || HDR_TRACE.equals(header)) {
+        reply.add(header);
+        reply.add(value);
+      }
+      header = msg.popString();
+    }
+    Reply r = new Reply(requestId, reply, System.nanoTime() + latency.nextNanos());
+    due.add(r);
+    dueById.put(requestId, r);
+  }
+
+  private void introduce(ZMQ.Socket dealer) {
+    List<String> frames = new ArrayList<>();
+    services.forEach((name, versions) -> versions.forEach(version -> {
+      frames.add(name);
+      frames.add(version);
+    }));
+    if (weight != 1) {
+      frames.add(Constants.INTR_WEIGHT);
+      frames.add(String.valueOf(weight));
+    }
+    send(dealer, Constants.INTR, frames.toArray(new String[0]));
+  }
+
+  @SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
+  private static void send(ZMQ.Socket dealer, String command, String... frames) {
+    ZMsg msg = new ZMsg();
+    msg.add(PROTOCOL_HEADER);
+    msg.add(command);
+    for (String frame : frames)
+      msg.add(frame);
+    msg.send(dealer);
+  }
+
+  private static byte[] status(int status) {
+    return new byte[]{(byte) (status >>> 24), (byte) (status >>> 16), (byte) (status >>> 8),
+        (byte) status};
+  }
+
+  private static class Reply implements Comparable<Reply> {
+    private final String requestId;
+    private final ZMsg msg;
+    private final long dueAt;
+
+    Reply(String requestId, ZMsg msg, long dueAt) {
+      this.requestId = requestId;
+      this.msg = msg;
+      this.dueAt = dueAt;
+    }
+
+    @Override
+    public int compareTo(Reply o) {
+      return Long.compare(dueAt, o.dueAt);
+    }
+  }
+
+  public static class Builder {
+    private String darbaanIp = "127.0.0.1";
+    private int darbaanPort;
+    private String ip = "127.0.0.1";
+    private int port;
+    private final Map<String, List<String>> services = new HashMap<>();
+    private int weight = 1;
+    private Latency latency = Latency.constant(0, TimeUnit.NANOSECONDS);
+    private double errorRate = 0;
+    private int errorStatus = 500;
+    private double pongLoss = 0;
+
+    /**
+     * Set the address of the Darbaan to connect to
+     */
+    public Builder setDarbaan(String ip, int port) {
+      this.darbaanIp = ip;
+      this.darbaanPort = port;
+      return this;
+    }
+
+    /**
+     * Set the address this server introduces itself by, its identity. Nothing is bound on it
+     */
+    public Builder setAddress(String ip, int port) {
+      this.ip = ip;
+      this.port = port;
+      return this;
+    }
+
+    public Builder addService(String name, String version) {
+      services.computeIfAbsent(name, n -> new ArrayList<>()).add(version);
+      return this;
+    }
+
+    public Builder setWeight(int weight) {
+      this.weight = weight;
+      return this;
+    }
+
+    public Builder setLatency(Latency latency) {
+      this.latency = latency;
+      return this;
+    }
+
+    /**
+     * Fail the given fraction of the requests with the given status
+     */
+    public Builder setErrorRate(double errorRate, int errorStatus) {
+      this.errorRate = errorRate;
+      this.errorStatus = errorStatus;
+      return this;
+    }
+
+    /**
+     * Leave the given fraction of the PINGs unanswered, 1 never answers
+     */
+    public Builder setPongLoss(double pongLoss) {
+      this.pongLoss = pongLoss;
+      return this;
+    }
+
+    public SafirSimulator build() {
+      return new SafirSimulator(this);
+    }
+  }
+}
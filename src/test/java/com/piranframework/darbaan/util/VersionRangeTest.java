@@ -0,0 +1,87 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Isa Hekmatizadeh
+ */
+public class VersionRangeTest {
+
+  @Test
+  public void latestMatchesReleases() {
+    assertTrue(VersionRange.parse("latest").matches(Version.of("7.3")));
+    assertTrue(VersionRange.parse("*").matches(Version.of("1")));
+    assertFalse(VersionRange.parse("latest").matches(Version.of("8-beta")));
+  }
+
+  @Test
+  public void caretKeepsMajor() {
+    VersionRange range = VersionRange.parse("^2.1");
+    assertTrue(range.matches(Version.of("2.1")));
+    assertTrue(range.matches(Version.of("2.10")));
+    assertFalse(range.matches(Version.of("2.0")));
+    assertFalse(range.matches(Version.of("3")));
+    assertFalse(range.matches(Version.of("2.2-rc")));
+  }
+
+  @Test
+  public void bracketsIncludeAndParenthesesExcludeBounds() {
+    VersionRange range = VersionRange.parse("[1,3)");
+    assertTrue(range.matches(Version.of("1")));
+    assertTrue(range.matches(Version.of("2.5")));
+    assertFalse(range.matches(Version.of("3")));
+    assertFalse(range.matches(Version.of("0.9")));
+    range = VersionRange.parse("(1,3]");
+    assertFalse(range.matches(Version.of("1")));
+    assertTrue(range.matches(Version.of("3")));
+  }
+
+  @Test
+  public void emptyBoundIsUnbounded() {
+    assertTrue(VersionRange.parse("[2,]").matches(Version.of("99")));
+    assertTrue(VersionRange.parse("(,2]").matches(Version.of("0.1")));
+  }
+
+  @Test
+  public void preReleaseMatchesOnlyPreReleaseBounds() {
+    assertTrue(VersionRange.parse("[2-alpha,]").matches(Version.of("2-beta")));
+    assertTrue(VersionRange.parse("[2-alpha,]").matches(Version.of("2")));
+    assertFalse(VersionRange.parse("[2-beta,]").matches(Version.of("2-alpha")));
+    assertTrue(VersionRange.parse("2-beta").matches(Version.of("2-beta")));
+    assertFalse(VersionRange.parse("[1,3)").matches(Version.of("2-beta")));
+  }
+
+  @Test
+  public void exactSpecMatchesOnlyThatVersion() {
+    VersionRange range = VersionRange.parse("1.0");
+    assertTrue(range.matches(Version.of("1.0")));
+    assertFalse(range.matches(Version.of("1")));
+    assertFalse(range.matches(Version.of("1-0")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void malformedRangeIsRejected() {
+    VersionRange.parse("[1,3");
+  }
+}
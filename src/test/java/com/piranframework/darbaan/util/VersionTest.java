@@ -0,0 +1,92 @@
+/*
+ *  Copyright (c) 2018 Isa Hekmatizadeh.
+ *
+ *  This file is part of Darbaan.
+ *
+ *  Darbaan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Darbaan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Darbaan.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.piranframework.darbaan.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Isa Hekmatizadeh
+ */
+public class VersionTest {
+
+  @Test
+  public void numericSegmentsCompareAsNumbers() {
+    assertTrue(Version.of("1.10").compareTo(Version.of("1.9")) > 0);
+    assertTrue(Version.of("10").compareTo(Version.of("9")) > 0);
+    assertTrue(Version.of("2").compareTo(Version.of("1.9")) > 0);
+  }
+
+  @Test
+  public void leadingZerosDontChangeTheNumericOrder() {
+    assertTrue(Version.of("1.009").compareTo(Version.of("1.10")) < 0);
+    assertTrue(Version.of("1.010").compareTo(Version.of("1.9")) > 0);
+    assertTrue(Version.of("1.010").compareTo(Version.of("1.11")) < 0);
+    assertTrue(Version.of("1-beta.02").compareTo(Version.of("1-beta.10")) < 0);
+    assertTrue(Version.of("1.00").compareTo(Version.of("1.1")) < 0);
+    assertNotEquals(0, Version.of("1.01").compareTo(Version.of("1.1")));
+  }
+
+  @Test
+  public void preReleaseIsOlderThanItsRelease() {
+    assertTrue(Version.of("1-beta").compareTo(Version.of("1")) < 0);
+    assertTrue(Version.of("2-beta").compareTo(Version.of("1.9")) > 0);
+    assertTrue(Version.of("1-alpha").compareTo(Version.of("1-beta")) < 0);
+    assertTrue(Version.of("1-beta.2").compareTo(Version.of("1-beta.10")) < 0);
+    assertTrue(Version.of("1-1").compareTo(Version.of("1-beta")) < 0);
+    assertTrue(Version.of("1-beta").isPreRelease());
+    assertFalse(Version.of("1.2").isPreRelease());
+  }
+
+  @Test
+  public void distinctVersionsNeverCompareEqual() {
+    List<String> values = Arrays.asList("1", "1.0", "1-0", "1.", "01");
+    NavigableMap<Version, String> sorted = new TreeMap<>();
+    for (String value : values)
+      sorted.put(Version.of(value), value);
+    assertEquals(values.size(), sorted.size());
+    assertNotEquals(Version.of("1.0"), Version.of("1-0"));
+    assertEquals(0, Version.of("1.0").compareTo(Version.of("1.0")));
+    assertEquals(Version.of("1.0"), Version.of("1.0"));
+    assertEquals(Version.of("1.0").hashCode(), Version.of("1.0").hashCode());
+  }
+
+  @Test
+  public void sortsReleasesAndPreReleases() {
+    List<String> sorted = Arrays.asList("2", "1.0", "1-rc", "1.10", "1", "2-alpha", "1.9").stream()
+        .map(Version::of).sorted().map(Version::toString).collect(Collectors.toList());
+    assertEquals(Arrays.asList("1-rc", "1", "1.0", "1.9", "1.10", "2-alpha", "2"), sorted);
+  }
+
+  @Test
+  public void majorIsFirstReleaseSegment() {
+    assertEquals("2", Version.of("2.1-beta").major());
+    assertEquals("3", Version.of("3-rc.1").major());
+  }
+}